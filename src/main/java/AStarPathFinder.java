@@ -1,5 +1,4 @@
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -19,18 +18,19 @@ public class AStarPathFinder {
      * @return A list of nodes representing the path, excluding the start and end nodes.
      */
     public static List<Node> reconstructPath(Node endNode) {
-        List<Node> path = new ArrayList<>();
-        Node currentNode = endNode;
+        int length = 0;
+        for (Node currentNode = endNode; currentNode != null; currentNode = currentNode.getParent()) {
+            length++;
+        }
 
-        while (currentNode != null) {
-            path.add(currentNode);
+        // Fill from the back, skipping the end node, so the path comes out in order without the start node
+        Node[] path = new Node[Math.max(0, length - 2)];
+        Node currentNode = endNode.getParent();
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = currentNode;
             currentNode = currentNode.getParent();
         }
-
-        Collections.reverse(path);
-        path.remove(0);
-        path.remove(path.size() - 1);
-        return path;
+        return Arrays.asList(path);
     }
 
     /**
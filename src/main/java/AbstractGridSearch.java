@@ -0,0 +1,422 @@
+import java.util.Arrays;
+
+/**
+ * AbstractGridSearch holds what the headless A* searches over an {@link ObstacleMap} share: the
+ * parent pointers and generation stamps indexed by cell id ({@code y * width + x}), the
+ * expansion loop, the bookkeeping of a finished search and its {@link Result}.
+ * <p>
+ * A stamp of {@code 2 * generation} marks a cell as open in the current search and
+ * {@code 2 * generation + 1} as closed, so starting a new search only bumps the generation. Each
+ * step pops cells from the open list until it finds one that is not closed, which lets
+ * subclasses push a cell again instead of decreasing its key. Subclasses supply the open list,
+ * the costs and the neighbours of a cell, and can override the goal test. The {@link Heuristic}
+ * can be chosen among those a subclass supports.
+ * <p>
+ * An instance holds the buffers for one search at a time and is not thread-safe; use one
+ * instance per worker thread.
+ */
+public abstract class AbstractGridSearch {
+    private final int capacity;
+    protected final int[] parent;
+    protected final int[] stamp;
+    protected int generation;
+
+    protected ObstacleMap map;
+    protected int width;
+    protected int endCell;
+    protected int endX;
+    protected int endY;
+    protected Heuristic heuristic;
+    private int expansions;
+    private boolean finished;
+    private boolean found;
+    private long startTime;
+    private long elapsedNanos;
+
+    /**
+     * The distance estimates a search can use as its heuristic.
+     */
+    public enum Heuristic {
+        /**
+         * No estimate, which makes the search expand like Dijkstra's algorithm.
+         */
+        ZERO,
+        /**
+         * The straight-line distance.
+         */
+        EUCLIDEAN,
+        /**
+         * The sum of the horizontal and vertical distances, exact on open 4-connected maps.
+         */
+        MANHATTAN,
+        /**
+         * The cost of the cheapest path on an open 8-connected map.
+         */
+        OCTILE
+    }
+
+    /**
+     * Represents the outcome of a finished search.
+     */
+    public static class Result {
+        private final boolean found;
+        private final double cost;
+        private final PathBuffer path;
+        private final int expansions;
+        private final long nanos;
+
+        private Result(boolean found, double cost, PathBuffer path, int expansions, long nanos) {
+            this.found = found;
+            this.cost = cost;
+            this.path = path;
+            this.expansions = expansions;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Checks if a path was found.
+         *
+         * @return True if a path was found, otherwise false.
+         */
+        public boolean isFound() {
+            return found;
+        }
+
+        /**
+         * Returns the cost of the path, in units of one straight move.
+         *
+         * @return The cost of the path, or infinity if no path was found.
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * Returns the cell ids of the path from the start to the end, both included.
+         *
+         * @return The path, or an empty buffer if no path was found.
+         */
+        public PathBuffer getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the number of nodes expanded by the search.
+         *
+         * @return The number of expansions.
+         */
+        public int getExpansions() {
+            return expansions;
+        }
+
+        /**
+         * Returns the time spent searching.
+         *
+         * @return The search time in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * Constructs a new AbstractGridSearch able to search maps of up to the given number of cells.
+     *
+     * @param capacity The largest number of cells of a map this instance will search.
+     */
+    protected AbstractGridSearch(int capacity) {
+        this.capacity = capacity;
+        this.parent = new int[capacity];
+        this.stamp = new int[capacity];
+    }
+
+    /**
+     * Returns the heuristic used by searches.
+     *
+     * @return The heuristic.
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Sets the heuristic used by searches. It should only be changed between searches.
+     *
+     * @param heuristic The heuristic.
+     * @throws IllegalArgumentException If this search does not support the heuristic.
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        if (!supports(heuristic)) {
+            throw new IllegalArgumentException(heuristic + " is not admissible for this search");
+        }
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Checks if a heuristic keeps this search optimal. By default every heuristic does.
+     *
+     * @param heuristic The heuristic.
+     * @return True if the heuristic can be used, otherwise false.
+     */
+    public boolean supports(Heuristic heuristic) {
+        return heuristic != null;
+    }
+
+    /**
+     * Runs a search to completion.
+     *
+     * @param map    The map to search.
+     * @param startX The x coordinate of the start cell.
+     * @param startY The y coordinate of the start cell.
+     * @param endX   The x coordinate of the end cell.
+     * @param endY   The y coordinate of the end cell.
+     * @return The result of the search.
+     */
+    public Result search(ObstacleMap map, int startX, int startY, int endX, int endY) {
+        return search(map, startX, startY, endX, endY, new PathBuffer(0));
+    }
+
+    /**
+     * Runs a search to completion and writes its path into a caller-owned buffer.
+     *
+     * @param map    The map to search.
+     * @param startX The x coordinate of the start cell.
+     * @param startY The y coordinate of the start cell.
+     * @param endX   The x coordinate of the end cell.
+     * @param endY   The y coordinate of the end cell.
+     * @param path   The buffer to write the path into.
+     * @return The result of the search; its path is the given buffer.
+     */
+    public Result search(ObstacleMap map, int startX, int startY, int endX, int endY, PathBuffer path) {
+        start(map, startX, startY, endX, endY);
+        return complete(path);
+    }
+
+    /**
+     * Starts a new search, discarding any search in progress. Searches from or to an obstacle or
+     * a cell outside the map finish immediately without a path.
+     *
+     * @param map    The map to search.
+     * @param startX The x coordinate of the start cell.
+     * @param startY The y coordinate of the start cell.
+     * @param endX   The x coordinate of the end cell.
+     * @param endY   The y coordinate of the end cell.
+     * @throws IllegalArgumentException If the map has more cells than this instance can hold.
+     */
+    public void start(ObstacleMap map, int startX, int startY, int endX, int endY) {
+        reset(map);
+        this.endCell = endY * width + endX;
+        this.endX = endX;
+        this.endY = endY;
+
+        if (map.isObstacle(startX, startY) || map.isObstacle(endX, endY)) {
+            finish(false);
+            return;
+        }
+        open(startX, startY);
+    }
+
+    /**
+     * Performs one expansion of the current search.
+     *
+     * @return True if the search has finished, otherwise false.
+     */
+    public boolean step() {
+        if (finished) {
+            return true;
+        }
+        int current = -1;
+        while (current < 0) {
+            int cell = pop();
+            if (cell < 0) {
+                finish(false);
+                return true;
+            }
+            if (stamp[cell] != closedStamp()) {
+                current = cell;
+            }
+        }
+        if (isGoal(current)) {
+            endCell = current;
+            finish(true);
+            return true;
+        }
+        stamp[current] = closedStamp();
+        expansions++;
+        expand(current);
+        return false;
+    }
+
+    /**
+     * Checks if the current search has finished.
+     *
+     * @return True if the search has finished, otherwise false.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Checks if a cell has been expanded by the current search.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return True if the cell has been expanded, otherwise false.
+     */
+    public boolean isExpanded(int x, int y) {
+        if (map == null || map.isObstacle(x, y)) {
+            return false;
+        }
+        return stamp[y * width + x] == closedStamp();
+    }
+
+    /**
+     * Returns the number of nodes expanded so far by the current search.
+     *
+     * @return The number of expansions.
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Returns the result of the finished search with its path in a new buffer.
+     *
+     * @return The result of the search.
+     * @throws IllegalStateException If the search has not finished.
+     */
+    public Result getResult() {
+        return getResult(new PathBuffer(0));
+    }
+
+    /**
+     * Returns the result of the finished search with its path written into a caller-owned buffer,
+     * so a caller that reuses one buffer does not allocate per search. The result refers to the
+     * buffer, so it must be read before the buffer is reused.
+     *
+     * @param path The buffer to write the path into; it is emptied if no path was found.
+     * @return The result of the search.
+     * @throws IllegalStateException If the search has not finished.
+     */
+    public Result getResult(PathBuffer path) {
+        if (!finished) {
+            throw new IllegalStateException("Search has not finished");
+        }
+        if (!found) {
+            path.clear();
+            return new Result(false, Double.POSITIVE_INFINITY, path, expansions, elapsedNanos);
+        }
+        path.setFromParents(endCell, parent);
+        return new Result(true, pathCost(endCell), path, expansions, elapsedNanos);
+    }
+
+    /**
+     * Runs the current search to completion.
+     *
+     * @param path The buffer to write the path into.
+     * @return The result of the search; its path is the given buffer.
+     */
+    protected Result complete(PathBuffer path) {
+        while (!finished) {
+            step();
+        }
+        return getResult(path);
+    }
+
+    /**
+     * Prepares the buffers for a new search on a map and starts a new generation.
+     *
+     * @param map The map to search.
+     * @throws IllegalArgumentException If the map has more cells than this instance can hold.
+     */
+    protected void reset(ObstacleMap map) {
+        if ((long) map.getWidth() * map.getHeight() > capacity) {
+            throw new IllegalArgumentException("Map is larger than the search capacity");
+        }
+        this.map = map;
+        this.width = map.getWidth();
+        this.expansions = 0;
+        this.found = false;
+        this.finished = false;
+        this.startTime = System.nanoTime();
+        this.elapsedNanos = 0;
+        clearOpenList();
+        if (generation >= Integer.MAX_VALUE / 2 - 1) {
+            clearStamps();
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Clears the stamps before the generation wraps around. Subclasses with stamps of their own
+     * clear those too.
+     */
+    protected void clearStamps() {
+        Arrays.fill(stamp, 0);
+    }
+
+    /**
+     * Ends the current search.
+     *
+     * @param pathFound True if the goal was reached, otherwise false.
+     */
+    protected void finish(boolean pathFound) {
+        finished = true;
+        found = pathFound;
+        elapsedNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Checks if a cell ends the search. By default only the end cell does.
+     *
+     * @param cell The cell id.
+     * @return True if the cell is a goal, otherwise false.
+     */
+    protected boolean isGoal(int cell) {
+        return cell == endCell;
+    }
+
+    protected int openStamp() {
+        return generation * 2;
+    }
+
+    protected int closedStamp() {
+        return generation * 2 + 1;
+    }
+
+    /**
+     * Opens the start cell with a zero cost and no parent and puts it on the open list.
+     *
+     * @param startX The x coordinate of the start cell.
+     * @param startY The y coordinate of the start cell.
+     */
+    protected abstract void open(int startX, int startY);
+
+    /**
+     * Opens or improves the neighbours of a cell that has just been closed.
+     *
+     * @param cell The cell id.
+     */
+    protected abstract void expand(int cell);
+
+    /**
+     * Removes the cell with the lowest f value from the open list.
+     *
+     * @return The cell id, or -1 if the open list is empty.
+     */
+    protected abstract int pop();
+
+    /**
+     * Empties the open list.
+     */
+    protected abstract void clearOpenList();
+
+    /**
+     * Returns the cost of the best known path to a cell, in units of one straight move.
+     *
+     * @param cell The cell id.
+     * @return The path cost.
+     */
+    protected abstract double pathCost(int cell);
+}
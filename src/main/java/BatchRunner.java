@@ -0,0 +1,266 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * BatchRunner replays path queries from a file or standard input without the GUI.
+ * <p>
+ * The map is loaded once. Queries are read one line at a time, answered on a fixed pool of
+ * worker threads, each with its own {@link GridSearch}, and written back in input order as soon
+ * as every earlier query is done. A semaphore bounds the number of queries that are read but not
+ * yet written, so memory stays flat however long the input is. A summary with the aggregate
+ * throughput goes to standard error at the end.
+ * <p>
+ * Each input line holds {@code sx sy ex ey}, or {@code sx sy} followed by several target pairs
+ * to search for the nearest target. Blank lines and lines starting with {@code #} are skipped.
+ * Each output line holds {@code index found cost length expansions micros}, with a cost of -1
+ * and a length of 0 when there is no path, or {@code index error message} for a malformed line.
+ * <p>
+ * Usage: {@code BatchRunner <map file> [queries file|-] [output file|-] [threads] [max in flight]}
+ */
+public class BatchRunner {
+    private static final int IN_FLIGHT_PER_THREAD = 256;
+
+    private final ObstacleMap map;
+    private final ExecutorService workers;
+    private final ThreadLocal<GridSearch> searches;
+    private final ThreadLocal<PathBuffer> paths = ThreadLocal.withInitial(PathBuffer::new);
+    private final Semaphore inFlight;
+    private final BlockingQueue<Answer> answers;
+
+    /**
+     * Represents the answer to one query line.
+     */
+    private static class Answer {
+        private final long index;
+        private final String line;
+
+        private Answer(long index, String line) {
+            this.index = index;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Runs a batch from the command line.
+     *
+     * @param args The map file and optional input, output, thread count and in-flight limit.
+     * @throws Exception If a file cannot be read or written, or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: BatchRunner <map file> [queries file|-] [output file|-] [threads] [max in flight]");
+            System.exit(2);
+        }
+        long loadStart = System.nanoTime();
+        BitGrid map = BitGrid.read(Paths.get(args[0]));
+        long loadNanos = System.nanoTime() - loadStart;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : threads * IN_FLIGHT_PER_THREAD;
+
+        BufferedReader in = args.length > 1 && !args[1].equals("-")
+                ? Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        Writer out = args.length > 2 && !args[2].equals("-")
+                ? Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+
+        BatchRunner runner = new BatchRunner(map, threads, maxInFlight);
+        long runStart = System.nanoTime();
+        long[] totals;
+        try {
+            totals = runner.run(in, out);
+        } finally {
+            in.close();
+            out.close();
+        }
+        double seconds = (System.nanoTime() - runStart) / 1e9;
+        System.err.printf("map %dx%d loaded in %d ms%n", map.getWidth(), map.getHeight(), loadNanos / 1_000_000);
+        System.err.printf("%d queries (%d found, %d errors) in %.2f s on %d threads: %.0f queries/s, %d expansions, %.1f us per query%n",
+                totals[0], totals[1], totals[2], seconds, threads, totals[0] / seconds, totals[3],
+                totals[0] == 0 ? 0 : totals[4] / 1e3 / totals[0]);
+    }
+
+    /**
+     * Constructs a new BatchRunner.
+     *
+     * @param map         The map to answer queries on.
+     * @param threads     The number of worker threads.
+     * @param maxInFlight The maximum number of queries read but not yet written.
+     */
+    public BatchRunner(ObstacleMap map, int threads, int maxInFlight) {
+        this.map = map;
+        this.workers = Executors.newFixedThreadPool(threads);
+        int cells = map.getWidth() * map.getHeight();
+        this.searches = ThreadLocal.withInitial(() -> new GridSearch(cells));
+        this.inFlight = new Semaphore(maxInFlight);
+        this.answers = new ArrayBlockingQueue<>(maxInFlight);
+    }
+
+    /**
+     * Answers every query read from the input and writes the answers in input order.
+     *
+     * @param in  The query lines.
+     * @param out The destination of the answer lines.
+     * @return The number of queries, paths found, errors, total expansions and total search nanoseconds.
+     * @throws IOException          If reading or writing fails.
+     * @throws InterruptedException If the run is interrupted.
+     */
+    public long[] run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        long[] totals = new long[5];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong queryCount = new AtomicLong(-1);
+        Thread reader = Thread.currentThread();
+        Thread writer = new Thread(() -> {
+            try {
+                writeInOrder(out, queryCount);
+            } catch (IOException e) {
+                // Wake the reader, which may be waiting for a permit that will never be released
+                failure.compareAndSet(null, e);
+                reader.interrupt();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "batch-writer");
+        writer.start();
+
+        long index = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                inFlight.acquire();
+                long queryIndex = index++;
+                String query = line;
+                workers.execute(() -> {
+                    try {
+                        answers.add(new Answer(queryIndex, answer(queryIndex, query, totals)));
+                    } catch (Throwable e) {
+                        // The query will never be written, so stop both the writer and the reader
+                        failure.compareAndSet(null, e);
+                        writer.interrupt();
+                        reader.interrupt();
+                    }
+                });
+            }
+            queryCount.set(index);
+            writer.join();
+        } catch (InterruptedException e) {
+            if (failure.get() == null) {
+                throw e;
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        Throwable error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw (RuntimeException) error;
+        }
+        synchronized (totals) {
+            totals[0] = index;
+            return totals.clone();
+        }
+    }
+
+    /**
+     * Writes answers as soon as every earlier answer has been written, releasing one in-flight
+     * permit per line, until all queries have been written.
+     */
+    private void writeInOrder(Writer out, AtomicLong queryCount) throws IOException, InterruptedException {
+        Map<Long, String> waiting = new HashMap<>();
+        long nextIndex = 0;
+        while (nextIndex != queryCount.get()) {
+            Answer answer = answers.poll(10, TimeUnit.MILLISECONDS);
+            if (answer == null) {
+                out.flush();
+                continue;
+            }
+            waiting.put(answer.index, answer.line);
+            String line;
+            while ((line = waiting.remove(nextIndex)) != null) {
+                out.write(line);
+                out.write('\n');
+                nextIndex++;
+                inFlight.release();
+            }
+        }
+        out.flush();
+    }
+
+    private String answer(long index, String query, long[] totals) {
+        try {
+            return search(index, parseInts(query), totals);
+        } catch (RuntimeException e) {
+            synchronized (totals) {
+                totals[2]++;
+            }
+            return index + " error " + e.getMessage();
+        }
+    }
+
+    private String search(long index, int[] numbers, long[] totals) {
+        if (numbers.length < 4 || numbers.length % 2 != 0) {
+            throw new IllegalArgumentException("expected sx sy followed by target pairs");
+        }
+
+        GridSearch search = searches.get();
+        PathBuffer path = paths.get();
+        GridSearch.Result result;
+        if (numbers.length == 4) {
+            result = search.search(map, numbers[0], numbers[1], numbers[2], numbers[3], path);
+        } else {
+            int targets = numbers.length / 2 - 1;
+            int[] xs = new int[targets];
+            int[] ys = new int[targets];
+            for (int i = 0; i < targets; i++) {
+                xs[i] = numbers[2 + 2 * i];
+                ys[i] = numbers[3 + 2 * i];
+            }
+            result = search.searchNearest(map, numbers[0], numbers[1], xs, ys, path);
+        }
+        synchronized (totals) {
+            totals[1] += result.isFound() ? 1 : 0;
+            totals[3] += result.getExpansions();
+            totals[4] += result.getNanos();
+        }
+        // Print -1 rather than the infinite cost of a missing path
+        return index + " " + result.isFound() + " " + (result.isFound() ? String.valueOf(result.getCost()) : "-1") + " "
+                + result.getPath().length() + " " + result.getExpansions() + " " + result.getNanos() / 1000;
+    }
+
+    private static int[] parseInts(String line) {
+        String[] parts = line.split("[\\s,]+");
+        int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                numbers[i] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not an integer: " + parts[i]);
+            }
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * BitGrid is a compact obstacle map that stores one bit per cell.
+ * <p>
+ * Every row starts on a fresh 64-bit word, so bit {@code x & 63} of word
+ * {@code y * getWordsPerRow() + (x >>> 6)} holds the cell (x, y). A set bit marks an obstacle and
+ * the padding bits past the last column are always clear. Because rows never share a word,
+ * different threads may fill disjoint row ranges at the same time without synchronization.
+ */
+public class BitGrid implements ObstacleMap {
+    private static final int FILE_MAGIC = 0x414D4150; // "AMAP"
+    private static final int HEADER_BYTES = 12;
+    private static final int IO_CHUNK_WORDS = 1 << 16;
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    /**
+     * Constructs a new BitGrid with all cells free.
+     *
+     * @param width  The width of the grid.
+     * @param height The height of the grid.
+     * @throws IllegalArgumentException If a dimension is not positive or the grid is too large.
+     */
+    public BitGrid(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        long wordCount = (long) ((width + 63) >>> 6) * height;
+        if (wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Grid is too large: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[(int) wordCount];
+    }
+
+    /**
+     * Creates a BitGrid holding the obstacles of another map.
+     *
+     * @param map The map to copy.
+     * @return A new BitGrid with the same obstacles.
+     */
+    public static BitGrid copyOf(ObstacleMap map) {
+        BitGrid grid = new BitGrid(map.getWidth(), map.getHeight());
+        for (int y = 0; y < grid.height; y++) {
+            for (int x = 0; x < grid.width; x++) {
+                if (map.isObstacle(x, y)) {
+                    grid.setObstacle(x, y, true);
+                }
+            }
+        }
+        return grid;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean isObstacle(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return true;
+        }
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Marks or clears an obstacle at the specified coordinates.
+     *
+     * @param x        The x coordinate.
+     * @param y        The y coordinate.
+     * @param obstacle True to mark the cell as an obstacle, false to clear it.
+     */
+    public void setObstacle(int x, int y, boolean obstacle) {
+        int index = y * wordsPerRow + (x >>> 6);
+        if (obstacle) {
+            words[index] |= 1L << x;
+        } else {
+            words[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Marks or clears every cell in a rectangle. Coordinates are clipped to the grid.
+     *
+     * @param x0       The x coordinate of the left column, inclusive.
+     * @param y0       The y coordinate of the top row, inclusive.
+     * @param x1       The x coordinate of the right column, exclusive.
+     * @param y1       The y coordinate of the bottom row, exclusive.
+     * @param obstacle True to mark the cells as obstacles, false to clear them.
+     */
+    public void fillRect(int x0, int y0, int x1, int y1, boolean obstacle) {
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, width);
+        y1 = Math.min(y1, height);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        int firstWord = x0 >>> 6;
+        int lastWord = (x1 - 1) >>> 6;
+        long firstMask = -1L << x0;
+        long lastMask = -1L >>> (63 - ((x1 - 1) & 63));
+        for (int y = y0; y < y1; y++) {
+            int row = y * wordsPerRow;
+            for (int w = firstWord; w <= lastWord; w++) {
+                long mask = -1L;
+                if (w == firstWord) {
+                    mask &= firstMask;
+                }
+                if (w == lastWord) {
+                    mask &= lastMask;
+                }
+                if (obstacle) {
+                    words[row + w] |= mask;
+                } else {
+                    words[row + w] &= ~mask;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of 64-bit words used for each row.
+     *
+     * @return The number of words per row.
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Returns the mask of the bits of the last word of a row that belong to real columns.
+     *
+     * @return The mask of valid bits in the last word of each row.
+     */
+    public long getLastWordMask() {
+        return -1L >>> (63 - ((width - 1) & 63));
+    }
+
+    /**
+     * Returns the backing word array. Changes to the array are visible in the grid; callers
+     * writing to it must keep the padding bits of each row clear.
+     *
+     * @return The backing word array.
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    /**
+     * Counts the obstacles in the grid.
+     *
+     * @return The number of obstacle cells.
+     */
+    public long countObstacles() {
+        long count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Copies the obstacles of this grid onto a {@link Grid}, leaving the start and end nodes untouched.
+     * Both grids must have the same dimensions.
+     *
+     * @param grid The grid to update.
+     * @throws IllegalArgumentException If the dimensions differ.
+     */
+    public void applyTo(Grid grid) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid dimensions do not match");
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                Node node = grid.getNode(x, y);
+                if (node.isStart() || node.isEnd()) {
+                    continue;
+                }
+                if (isObstacle(x, y)) {
+                    node.setObstacle();
+                } else if (node.isObstacle()) {
+                    node.setBlank();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the grid to a file: a magic number, the width and height, then the row words.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(FILE_MAGIC).putInt(width).putInt(height).flip();
+            writeFully(channel, header);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_CHUNK_WORDS * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int offset = 0; offset < words.length; offset += IO_CHUNK_WORDS) {
+                int count = Math.min(IO_CHUNK_WORDS, words.length - offset);
+                buffer.clear();
+                buffer.asLongBuffer().put(words, offset, count);
+                buffer.limit(count * 8);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads a grid previously written with {@link #write(Path)}.
+     *
+     * @param file The file to read.
+     * @return The grid stored in the file.
+     * @throws IOException If the file cannot be read or is not a grid file.
+     */
+    public static BitGrid read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int[] size = readHeader(channel, file);
+            BitGrid grid = new BitGrid(size[0], size[1]);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_CHUNK_WORDS * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int offset = 0; offset < grid.words.length; offset += IO_CHUNK_WORDS) {
+                int count = Math.min(IO_CHUNK_WORDS, grid.words.length - offset);
+                buffer.clear();
+                buffer.limit(count * 8);
+                readFully(channel, buffer);
+                buffer.flip();
+                LongBuffer longs = buffer.asLongBuffer();
+                longs.get(grid.words, offset, count);
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Reads the width and height of a grid file without reading its cells.
+     *
+     * @param file The file to read.
+     * @return The width and height of the grid.
+     * @throws IOException If the file cannot be read or is not a grid file.
+     */
+    public static int[] readDimensions(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel, file);
+        }
+    }
+
+    /**
+     * Reads a rectangular region of a grid file written with {@link #write(Path)}. Only the words
+     * covering the region are read, so a region of a map far larger than memory can be loaded.
+     *
+     * @param file         The file to read.
+     * @param x            The x coordinate of the top left cell of the region.
+     * @param y            The y coordinate of the top left cell of the region.
+     * @param regionWidth  The width of the region.
+     * @param regionHeight The height of the region.
+     * @return A grid holding the region, with (x, y) of the file at (0, 0).
+     * @throws IOException              If the file cannot be read or is not a grid file.
+     * @throws IllegalArgumentException If the region is empty or not inside the map.
+     */
+    public static BitGrid readRegion(Path file, int x, int y, int regionWidth, int regionHeight) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int[] size = readHeader(channel, file);
+            if (x < 0 || y < 0 || regionWidth <= 0 || regionHeight <= 0
+                    || x + regionWidth > size[0] || y + regionHeight > size[1]) {
+                throw new IllegalArgumentException("Region is not inside the " + size[0] + "x" + size[1] + " map");
+            }
+            BitGrid grid = new BitGrid(regionWidth, regionHeight);
+            int fileWordsPerRow = (size[0] + 63) >>> 6;
+            int firstWord = x >>> 6;
+            int wordCount = ((x + regionWidth - 1) >>> 6) - firstWord + 1;
+            int shift = x & 63;
+            long lastWordMask = grid.getLastWordMask();
+            // One spare word so the shift below can always read the word after the current one
+            long[] fileWords = new long[wordCount + 1];
+            ByteBuffer buffer = ByteBuffer.allocate(wordCount * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int regionY = 0; regionY < regionHeight; regionY++) {
+                buffer.clear();
+                long position = HEADER_BYTES + ((long) (y + regionY) * fileWordsPerRow + firstWord) * 8;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of grid file");
+                    }
+                }
+                buffer.flip();
+                buffer.asLongBuffer().get(fileWords, 0, wordCount);
+
+                int base = regionY * grid.wordsPerRow;
+                for (int column = 0; column < grid.wordsPerRow; column++) {
+                    long word = fileWords[column] >>> shift;
+                    if (shift != 0) {
+                        word |= fileWords[column + 1] << (64 - shift);
+                    }
+                    grid.words[base + column] = word;
+                }
+                grid.words[base + grid.wordsPerRow - 1] &= lastWordMask;
+            }
+            return grid;
+        }
+    }
+
+    private static int[] readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header);
+        header.flip();
+        if (header.getInt() != FILE_MAGIC) {
+            throw new IOException("Not a grid file: " + file);
+        }
+        return new int[]{header.getInt(), header.getInt()};
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of grid file");
+            }
+        }
+    }
+}
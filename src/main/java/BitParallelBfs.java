@@ -0,0 +1,484 @@
+import java.util.Arrays;
+
+/**
+ * BitParallelBfs computes breadth-first distance fields on 4-connected unit-cost grids, working
+ * on 64 cells per word operation.
+ * <p>
+ * The walkable cells and the current wavefront are kept as rows of 64-bit words laid out like a
+ * {@link BitGrid}. Each wave shifts the frontier words one cell left, right, up and down, masks
+ * the result with the walkable cells not yet visited and takes that as the next frontier. Only
+ * the words touched by the frontier and their four neighbours are visited, so the work per wave
+ * follows the size of the wavefront rather than the size of the map.
+ * <p>
+ * Distances still have to be written one cell at a time, and a diagonal wavefront touches a word
+ * for only one or two of its cells, so on open maps the distance field is no faster than a
+ * scalar breadth-first search. When only reachability is needed,
+ * {@link #computeReachable(int[], int[])} floods whole words without waves or distances and is
+ * over an order of magnitude faster. Callers that compute many fields can pass their own
+ * distance buffer to {@link #compute(int[], int[], int[])} to avoid allocating one per run.
+ * <p>
+ * The walkable cells are copied when the engine is constructed; construct a new engine after the
+ * map changes. An engine reuses its buffers between runs and is not thread-safe.
+ */
+public class BitParallelBfs {
+    private static final int[][] DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1}
+    };
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final int stride;
+    private final long[] walkable;
+    private final long[] visited;
+    private long[] frontier;
+    private long[] next;
+    private int[] activeWords;
+    private int[] nextWords;
+    private int lastDistance;
+    private int reachedCount;
+
+    /**
+     * Represents the distances of all cells from the sources of a search.
+     */
+    public static class DistanceField {
+        private final int width;
+        private final int height;
+        private final int[] distances;
+        private final int reachableCount;
+        private final int maxDistance;
+
+        private DistanceField(int width, int height, int[] distances, int reachableCount, int maxDistance) {
+            this.width = width;
+            this.height = height;
+            this.distances = distances;
+            this.reachableCount = reachableCount;
+            this.maxDistance = maxDistance;
+        }
+
+        /**
+         * Returns the number of steps from the nearest source to a cell.
+         *
+         * @param x The x coordinate.
+         * @param y The y coordinate.
+         * @return The distance, or -1 if the cell is unreachable or out of bounds.
+         */
+        public int getDistance(int x, int y) {
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                return -1;
+            }
+            return distances[y * width + x];
+        }
+
+        /**
+         * Checks if a cell can be reached from a source.
+         *
+         * @param x The x coordinate.
+         * @param y The y coordinate.
+         * @return True if the cell is reachable, otherwise false.
+         */
+        public boolean isReachable(int x, int y) {
+            return getDistance(x, y) >= 0;
+        }
+
+        /**
+         * Returns the neighbour of a cell that is one step closer to the nearest source, which
+         * turns the distance field into a flow field.
+         *
+         * @param x The x coordinate.
+         * @param y The y coordinate.
+         * @return The coordinates of the next cell, or null if the cell is a source or unreachable.
+         */
+        public int[] getNextStep(int x, int y) {
+            int distance = getDistance(x, y);
+            if (distance <= 0) {
+                return null;
+            }
+            for (int[] direction : DIRECTIONS) {
+                int newX = x + direction[0];
+                int newY = y + direction[1];
+                if (getDistance(newX, newY) == distance - 1) {
+                    return new int[]{newX, newY};
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the number of reachable cells, including the sources.
+         *
+         * @return The number of reachable cells.
+         */
+        public int getReachableCount() {
+            return reachableCount;
+        }
+
+        /**
+         * Returns the largest finite distance in the field.
+         *
+         * @return The largest distance.
+         */
+        public int getMaxDistance() {
+            return maxDistance;
+        }
+
+        /**
+         * Returns the distances indexed by {@code y * width + x}, with -1 for unreachable cells.
+         *
+         * @return The backing distance array.
+         */
+        public int[] getDistances() {
+            return distances;
+        }
+    }
+
+    /**
+     * Constructs a new BitParallelBfs over a snapshot of the given grid.
+     *
+     * @param grid The grid to search.
+     */
+    public BitParallelBfs(BitGrid grid) {
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.wordsPerRow = grid.getWordsPerRow();
+        // Each row is followed by a guard word and the map is framed by guard rows, so the
+        // neighbours of a real word are always inside the arrays and never walkable
+        this.stride = wordsPerRow + 1;
+        long[] obstacles = grid.getWords();
+        long lastWordMask = grid.getLastWordMask();
+        this.walkable = new long[(height + 2) * stride];
+        for (int y = 0; y < height; y++) {
+            for (int column = 0; column < wordsPerRow; column++) {
+                long free = ~obstacles[y * wordsPerRow + column];
+                walkable[wordIndex(y, column)] = column == wordsPerRow - 1 ? free & lastWordMask : free;
+            }
+        }
+        this.visited = new long[walkable.length];
+        this.frontier = new long[walkable.length];
+        this.next = new long[walkable.length];
+        this.activeWords = new int[64];
+        this.nextWords = new int[64];
+    }
+
+    /**
+     * Computes the distance of every cell from a single source cell.
+     *
+     * @param sourceX The x coordinate of the source.
+     * @param sourceY The y coordinate of the source.
+     * @return The distance field.
+     */
+    public DistanceField compute(int sourceX, int sourceY) {
+        return compute(new int[]{sourceX}, new int[]{sourceY});
+    }
+
+    /**
+     * Computes the distance of every cell from the nearest of several source cells.
+     * Sources that are obstacles or out of bounds are ignored.
+     *
+     * @param sourceXs The x coordinates of the sources.
+     * @param sourceYs The y coordinates of the sources.
+     * @return The distance field.
+     */
+    public DistanceField compute(int[] sourceXs, int[] sourceYs) {
+        return compute(sourceXs, sourceYs, new int[width * height]);
+    }
+
+    /**
+     * Computes the distance of every cell from the nearest of several source cells into a
+     * caller-owned buffer, so repeated runs do not allocate. The returned field is backed by the
+     * buffer and changes when the buffer is reused.
+     *
+     * @param sourceXs  The x coordinates of the sources.
+     * @param sourceYs  The y coordinates of the sources.
+     * @param distances The buffer to fill, indexed by {@code y * width + x}.
+     * @return The distance field.
+     * @throws IllegalArgumentException If the buffer is smaller than the map.
+     */
+    public DistanceField compute(int[] sourceXs, int[] sourceYs, int[] distances) {
+        if (distances.length < width * height) {
+            throw new IllegalArgumentException("Distance buffer is smaller than the map");
+        }
+        Arrays.fill(distances, 0, width * height, -1);
+        int reachableCount = run(sourceXs, sourceYs, distances);
+        return new DistanceField(width, height, distances, reachableCount, lastDistance);
+    }
+
+    /**
+     * Finds the cells reachable from any of several source cells without computing distances.
+     * Instead of advancing in waves it floods whole words: each word on a work stack is filled
+     * along its runs of walkable cells in both directions at once and passes the new bits to the
+     * four neighbouring words, which go on the stack if they gained any. A word is pushed only
+     * when it gains cells, so the work is bounded by the number of cells even on mazes, and on
+     * open maps each word is handled only a few times. The reached cells can be queried with
+     * {@link #isReached(int, int)} until the next run. Sources that are obstacles or out of
+     * bounds are ignored.
+     *
+     * @param sourceXs The x coordinates of the sources.
+     * @param sourceYs The y coordinates of the sources.
+     * @return The number of reachable cells, including the sources.
+     */
+    public int computeReachable(int[] sourceXs, int[] sourceYs) {
+        Arrays.fill(visited, 0L);
+        int stackSize = 0;
+        for (int i = 0; i < sourceXs.length; i++) {
+            int x = sourceXs[i];
+            int y = sourceYs[i];
+            if (x >= 0 && x < width && y >= 0 && y < height) {
+                stackSize = offer(wordIndex(y, x >>> 6), 1L << x, stackSize);
+            }
+        }
+
+        while (stackSize > 0) {
+            int index = activeWords[--stackSize];
+            long filled = fillRuns(visited[index], walkable[index]);
+            visited[index] = filled;
+            stackSize = offer(index - 1, filled << 63, stackSize);
+            stackSize = offer(index + 1, filled >>> 63, stackSize);
+            stackSize = offer(index - stride, filled, stackSize);
+            stackSize = offer(index + stride, filled, stackSize);
+        }
+
+        int reachableCount = 0;
+        for (long word : visited) {
+            reachableCount += Long.bitCount(word);
+        }
+        return reachableCount;
+    }
+
+    /**
+     * Marks the walkable cells among the given bits of a word as visited and pushes the word on
+     * the work stack if any of them is new.
+     */
+    private int offer(int index, long bits, int stackSize) {
+        long reached = bits & walkable[index] & ~visited[index];
+        if (reached == 0) {
+            return stackSize;
+        }
+        visited[index] |= reached;
+        activeWords = ensureCapacity(activeWords, stackSize + 1);
+        activeWords[stackSize] = index;
+        return stackSize + 1;
+    }
+
+    /**
+     * Extends every seed bit over the run of set mask bits containing it, in both directions.
+     * Towards the high bits the seeds are added to the mask, so each carry runs up to the end of
+     * its run; towards the low bits the seeds are shifted down in doubling steps, each step only
+     * through mask bits.
+     */
+    private static long fillRuns(long seeds, long mask) {
+        long up = (((mask + seeds) ^ mask) & mask) | seeds;
+        long down = seeds;
+        long through = mask;
+        for (int shift = 1; shift < 64; shift <<= 1) {
+            down |= through & (down >>> shift);
+            through &= through >>> shift;
+        }
+        return up | down;
+    }
+
+    /**
+     * Checks if a cell was reached by the last run.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return True if the cell was reached, otherwise false.
+     */
+    public boolean isReached(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+        return (visited[wordIndex(y, x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Computes the distances from a source cell to a few target cells only. No per-cell distances
+     * are written and the waves stop as soon as the targets that can still be reached have been,
+     * instead of flooding the whole map. Targets are grouped by a component label supplied by the
+     * caller, with targets in the same connected region sharing a label: once the first target is
+     * reached, only the targets sharing its label remain reachable. Without labels the waves stop
+     * once every target has been reached or the reachable cells run out. A distance limit stops
+     * them earlier still, for callers that have no use for targets beyond it.
+     *
+     * @param sourceX          The x coordinate of the source.
+     * @param sourceY          The y coordinate of the source.
+     * @param targetXs         The x coordinates of the targets.
+     * @param targetYs         The y coordinates of the targets.
+     * @param targetComponents The component label of each target, or null if unknown.
+     * @param maxDistance      The largest distance to search.
+     * @param distances        Receives the distance to each target, or -1 if it is unreachable
+     *                         or farther than the limit.
+     * @return The number of targets reached.
+     */
+    public int distancesTo(int sourceX, int sourceY, int[] targetXs, int[] targetYs, int[] targetComponents,
+                           int maxDistance, int[] distances) {
+        Arrays.fill(distances, 0, targetXs.length, -1);
+        int activeCount = seed(new int[]{sourceX}, new int[]{sourceY}, null);
+        int reached = 0;
+        int pending = targetXs.length;
+        int component = -1;
+        int distance = 0;
+        while (true) {
+            for (int i = 0; i < targetXs.length; i++) {
+                if (distances[i] < 0 && isReached(targetXs[i], targetYs[i])) {
+                    distances[i] = distance;
+                    reached++;
+                    if (targetComponents != null && component < 0) {
+                        component = targetComponents[i];
+                        pending = 0;
+                        for (int j = 0; j < targetXs.length; j++) {
+                            pending += targetComponents[j] == component ? 1 : 0;
+                        }
+                    }
+                }
+            }
+            if (reached == pending || activeCount == 0 || distance >= maxDistance) {
+                break;
+            }
+            distance++;
+            activeCount = wave(activeCount, distance, null);
+        }
+        for (int i = 0; i < activeCount; i++) {
+            frontier[activeWords[i]] = 0L;
+        }
+        return reached;
+    }
+
+    /**
+     * Runs the waves from the sources, writing the distance of every reached cell.
+     *
+     * @return The number of reached cells.
+     */
+    private int run(int[] sourceXs, int[] sourceYs, int[] distances) {
+        int activeCount = seed(sourceXs, sourceYs, distances);
+        int distance = 0;
+        while (activeCount > 0) {
+            distance++;
+            activeCount = wave(activeCount, distance, distances);
+        }
+        lastDistance = Math.max(0, distance - 1);
+        return reachedCount;
+    }
+
+    /**
+     * Clears the visited cells and makes the valid sources the first frontier.
+     *
+     * @param distances The buffer to write the zero distances of the sources to, or null.
+     * @return The number of frontier words.
+     */
+    private int seed(int[] sourceXs, int[] sourceYs, int[] distances) {
+        Arrays.fill(visited, 0L);
+        reachedCount = 0;
+        int activeCount = 0;
+        for (int i = 0; i < sourceXs.length; i++) {
+            int x = sourceXs[i];
+            int y = sourceYs[i];
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                continue;
+            }
+            int index = wordIndex(y, x >>> 6);
+            long bit = 1L << x;
+            if ((walkable[index] & bit) == 0 || (visited[index] & bit) != 0) {
+                continue;
+            }
+            if (frontier[index] == 0) {
+                activeWords = ensureCapacity(activeWords, activeCount + 1);
+                activeWords[activeCount++] = index;
+            }
+            frontier[index] |= bit;
+            visited[index] |= bit;
+            if (distances != null) {
+                distances[y * width + x] = 0;
+            }
+            reachedCount++;
+        }
+        return activeCount;
+    }
+
+    /**
+     * Advances the frontier by one wave and makes the newly reached cells the next frontier.
+     *
+     * @param activeCount The number of frontier words.
+     * @param distance    The distance of the cells this wave reaches.
+     * @param distances   The buffer to write their distances to, or null.
+     * @return The number of words of the new frontier.
+     */
+    private int wave(int activeCount, int distance, int[] distances) {
+        int touchedCount = spread(activeCount);
+        int nextCount = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int index = nextWords[i];
+            long reached = next[index] & walkable[index] & ~visited[index];
+            next[index] = reached;
+            if (reached == 0) {
+                continue;
+            }
+            nextWords[nextCount++] = index;
+            visited[index] |= reached;
+            reachedCount += Long.bitCount(reached);
+            if (distances != null) {
+                int y = index / stride - 1;
+                int cellStart = y * width + ((index - (y + 1) * stride) << 6);
+                while (reached != 0) {
+                    distances[cellStart + Long.numberOfTrailingZeros(reached)] = distance;
+                    reached &= reached - 1;
+                }
+            }
+        }
+        for (int i = 0; i < activeCount; i++) {
+            frontier[activeWords[i]] = 0L;
+        }
+
+        long[] swapBits = frontier;
+        frontier = next;
+        next = swapBits;
+        int[] swapWords = activeWords;
+        activeWords = nextWords;
+        nextWords = swapWords;
+        return nextCount;
+    }
+
+    /**
+     * Shifts every frontier word one cell in each direction into the next buffer and records each
+     * word that receives bits, once, in the next word list. Bits spill across word boundaries
+     * through the neighbouring words of the same row.
+     *
+     * @param activeCount The number of frontier words.
+     * @return The number of words that received bits.
+     */
+    private int spread(int activeCount) {
+        nextWords = ensureCapacity(nextWords, activeCount * 5);
+        int count = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int index = activeWords[i];
+            long bits = frontier[index];
+            count = deposit(index, (bits << 1) | (bits >>> 1), count);
+            count = deposit(index - 1, bits << 63, count);
+            count = deposit(index + 1, bits >>> 63, count);
+            count = deposit(index - stride, bits, count);
+            count = deposit(index + stride, bits, count);
+        }
+        return count;
+    }
+
+    private int deposit(int index, long bits, int count) {
+        if (bits != 0) {
+            if (next[index] == 0) {
+                nextWords[count++] = index;
+            }
+            next[index] |= bits;
+        }
+        return count;
+    }
+
+    private int wordIndex(int y, int column) {
+        return (y + 1) * stride + column;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length >= capacity) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+}
@@ -0,0 +1,355 @@
+import javafx.beans.property.SimpleStringProperty;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * ComparisonDashboard runs several search engines on the same map, start and end and shows the
+ * results side by side.
+ * <p>
+ * Every engine gets its own pane showing the cells it expanded and the path it found, in the
+ * colors of the main view, and a table lists the expansions, search time and path cost of each
+ * engine. The engines run on a background task against a snapshot of the map, so the main view
+ * can be edited while a comparison is open. Each engine runs several times and its fastest run
+ * is reported, which keeps the times of small maps from being dominated by the first run.
+ * <p>
+ * The engines to compare and the heuristic of the A* engines are chosen in the window. With the
+ * default heuristic every engine uses its own; an engine that cannot use the chosen heuristic
+ * without losing optimality is skipped.
+ */
+public class ComparisonDashboard {
+    private static final int RUNS = 5;
+    private static final double PANES_WIDTH = 1400;
+    private static final double MAX_CELL_SIZE = 12;
+    private static final double TABLE_HEIGHT = 170;
+    private static final String DEFAULT_HEURISTIC = "DEFAULT";
+
+    private final ObstacleMap map;
+    private final int startX;
+    private final int startY;
+    private final int endX;
+    private final int endY;
+
+    /**
+     * The engines the dashboard can compare.
+     */
+    public enum Engine {
+        FLOAT_ASTAR("A* (float heap)"),
+        INTEGER_ASTAR("A* (integer buckets)"),
+        INTEGER_ASTAR_DIAGONAL("A* (integer buckets, 8-connected)"),
+        BIT_PARALLEL_BFS("BFS (bit-parallel, full field)");
+
+        private final String label;
+
+        Engine(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Represents the outcome of one engine.
+     */
+    private static class Run {
+        private final String engine;
+        private String heuristic = "-";
+        private boolean found;
+        private double cost;
+        private long expansions;
+        private long nanos = Long.MAX_VALUE;
+        private boolean[] expanded;
+        private int[] path = new int[0];
+
+        private Run(String engine) {
+            this.engine = engine;
+        }
+    }
+
+    /**
+     * Constructs a new ComparisonDashboard.
+     *
+     * @param map    A snapshot of the map to compare the engines on.
+     * @param startX The x coordinate of the start cell.
+     * @param startY The y coordinate of the start cell.
+     * @param endX   The x coordinate of the end cell.
+     * @param endY   The y coordinate of the end cell.
+     */
+    public ComparisonDashboard(ObstacleMap map, int startX, int startY, int endX, int endY) {
+        this.map = map;
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+    }
+
+    /**
+     * Opens the dashboard in a new window and starts a comparison of all engines in the background.
+     */
+    public void show() {
+        TableView<Run> table = new TableView<>();
+        table.getColumns().add(column("Engine", run -> run.engine));
+        table.getColumns().add(column("Heuristic", run -> run.heuristic));
+        table.getColumns().add(column("Found", run -> Boolean.toString(run.found)));
+        table.getColumns().add(column("Expansions", run -> Long.toString(run.expansions)));
+        table.getColumns().add(column("Time (us)", run -> String.format("%.1f", run.nanos / 1e3)));
+        table.getColumns().add(column("Path cost", run -> run.found ? String.format("%.2f", run.cost) : "-"));
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.setPrefHeight(TABLE_HEIGHT);
+
+        Map<Engine, CheckBox> engineBoxes = new EnumMap<>(Engine.class);
+        HBox controls = new HBox(10);
+        for (Engine engine : Engine.values()) {
+            CheckBox box = new CheckBox(engine.toString());
+            box.setSelected(true);
+            engineBoxes.put(engine, box);
+            controls.getChildren().add(box);
+        }
+        ComboBox<String> heuristicBox = new ComboBox<>();
+        heuristicBox.getItems().add(DEFAULT_HEURISTIC);
+        for (AbstractGridSearch.Heuristic heuristic : AbstractGridSearch.Heuristic.values()) {
+            heuristicBox.getItems().add(heuristic.name());
+        }
+        heuristicBox.setValue(DEFAULT_HEURISTIC);
+        Button compareButton = new Button("Compare");
+        controls.getChildren().addAll(new Label("Heuristic:"), heuristicBox, compareButton);
+
+        Label status = new Label();
+        SplitPane panes = new SplitPane();
+        VBox root = new VBox(10, controls, status, panes, table);
+        root.setPadding(new Insets(10));
+
+        compareButton.setOnAction(e -> {
+            Set<Engine> engines = EnumSet.noneOf(Engine.class);
+            engineBoxes.forEach((engine, box) -> {
+                if (box.isSelected()) {
+                    engines.add(engine);
+                }
+            });
+            AbstractGridSearch.Heuristic heuristic = DEFAULT_HEURISTIC.equals(heuristicBox.getValue())
+                    ? null : AbstractGridSearch.Heuristic.valueOf(heuristicBox.getValue());
+            compare(engines, heuristic, compareButton, status, panes, table);
+        });
+
+        Stage stage = new Stage();
+        stage.setTitle("Engine comparison");
+        stage.setScene(new Scene(root));
+        stage.show();
+        compareButton.fire();
+    }
+
+    /**
+     * Runs a comparison on a background task and shows its runs when it is done.
+     */
+    private void compare(Set<Engine> engines, AbstractGridSearch.Heuristic heuristic, Button compareButton,
+                         Label status, SplitPane panes, TableView<Run> table) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        List<String> skipped = new ArrayList<>();
+        Task<List<Run>> comparison = new Task<List<Run>>() {
+            @Override
+            protected List<Run> call() {
+                return runAll(engines, heuristic, skipped);
+            }
+        };
+        comparison.setOnSucceeded(e -> {
+            List<Run> runs = comparison.getValue();
+            double cellSize = Math.max(1, Math.min(MAX_CELL_SIZE, Math.floor(PANES_WIDTH / (Math.max(1, runs.size()) * width))));
+            for (Run run : runs) {
+                Canvas canvas = new Canvas(width * cellSize, height * cellSize);
+                draw(canvas.getGraphicsContext2D(), run, cellSize);
+                panes.getItems().add(new VBox(5, new Label(run.engine), canvas));
+            }
+            table.getItems().setAll(runs);
+            status.setText("Start (" + startX + ", " + startY + "), end (" + endX + ", " + endY
+                    + "), best of " + RUNS + " runs per engine"
+                    + (skipped.isEmpty() ? "" : "; skipped, heuristic not admissible: " + String.join(", ", skipped)));
+            compareButton.setDisable(false);
+            status.getScene().getWindow().sizeToScene();
+        });
+        comparison.setOnFailed(e -> {
+            status.setText("Comparison failed: " + comparison.getException());
+            compareButton.setDisable(false);
+        });
+
+        compareButton.setDisable(true);
+        status.setText("Running...");
+        panes.getItems().clear();
+        table.getItems().clear();
+        Thread thread = new Thread(comparison, "engine-comparison");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static TableColumn<Run, String> column(String title, Function<Run, String> value) {
+        TableColumn<Run, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new SimpleStringProperty(value.apply(cell.getValue())));
+        return column;
+    }
+
+    /**
+     * Runs the chosen engines on the snapshot and collects the expanded cells and path of their
+     * last runs.
+     *
+     * @param engines   The engines to run.
+     * @param heuristic The heuristic of the A* engines, or null for the default of each engine.
+     * @param skipped   Receives the names of the engines that cannot use the heuristic.
+     * @return The runs, in the order of the engines.
+     */
+    private List<Run> runAll(Set<Engine> engines, AbstractGridSearch.Heuristic heuristic, List<String> skipped) {
+        int cells = map.getWidth() * map.getHeight();
+        List<Run> runs = new ArrayList<>();
+        for (Engine engine : engines) {
+            AbstractGridSearch search;
+            switch (engine) {
+                case FLOAT_ASTAR:
+                    search = new GridSearch(cells);
+                    break;
+                case INTEGER_ASTAR:
+                    search = new IntegerGridSearch(cells, false);
+                    break;
+                case INTEGER_ASTAR_DIAGONAL:
+                    search = new IntegerGridSearch(cells, true);
+                    break;
+                default:
+                    runs.add(runBreadthFirst());
+                    continue;
+            }
+            if (heuristic != null && !search.supports(heuristic)) {
+                skipped.add(engine.toString());
+                continue;
+            }
+            if (heuristic != null) {
+                search.setHeuristic(heuristic);
+            }
+            runs.add(runSearch(engine.toString(), search));
+        }
+        return runs;
+    }
+
+    private Run runSearch(String engine, AbstractGridSearch search) {
+        Run run = new Run(engine);
+        for (int i = 0; i < RUNS; i++) {
+            AbstractGridSearch.Result result = search.search(map, startX, startY, endX, endY);
+            run.found = result.isFound();
+            run.cost = result.getCost();
+            run.expansions = result.getExpansions();
+            run.nanos = Math.min(run.nanos, result.getNanos());
+            run.path = result.getPath().toArray();
+        }
+        run.expanded = expandedCells(search::isExpanded);
+        run.heuristic = search.getHeuristic().name();
+        return run;
+    }
+
+    /**
+     * Runs the bit-parallel breadth-first search from the end cell. It labels every reachable
+     * cell, but the pane highlights and the expansions count only the cells closer to the end
+     * than the start, which are the ones a breadth-first search stopping at the start would have
+     * settled. Its time includes building the bit rows of the engine.
+     */
+    private Run runBreadthFirst() {
+        Run run = new Run(Engine.BIT_PARALLEL_BFS.toString());
+        if (map.isObstacle(startX, startY) || map.isObstacle(endX, endY)) {
+            run.nanos = 0;
+            run.expanded = new boolean[map.getWidth() * map.getHeight()];
+            return run;
+        }
+        BitGrid bits = BitGrid.copyOf(map);
+        BitParallelBfs.DistanceField field = null;
+        for (int i = 0; i < RUNS; i++) {
+            long startTime = System.nanoTime();
+            BitParallelBfs bfs = new BitParallelBfs(bits);
+            field = bfs.compute(endX, endY);
+            run.nanos = Math.min(run.nanos, System.nanoTime() - startTime);
+        }
+
+        BitParallelBfs.DistanceField lastField = field;
+        int distance = lastField.getDistance(startX, startY);
+        run.found = distance >= 0;
+        run.cost = distance;
+        run.expanded = expandedCells((x, y) -> {
+            int cellDistance = lastField.getDistance(x, y);
+            return cellDistance >= 0 && (distance < 0 || cellDistance < distance);
+        });
+        for (boolean expanded : run.expanded) {
+            run.expansions += expanded ? 1 : 0;
+        }
+        if (run.found) {
+            run.path = new int[distance + 1];
+            int[] cell = {startX, startY};
+            for (int i = 0; cell != null; i++) {
+                run.path[i] = cell[1] * map.getWidth() + cell[0];
+                cell = lastField.getNextStep(cell[0], cell[1]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * A test for whether a cell was expanded.
+     */
+    private interface CellTest {
+        boolean test(int x, int y);
+    }
+
+    private boolean[] expandedCells(CellTest test) {
+        int width = map.getWidth();
+        boolean[] expanded = new boolean[width * map.getHeight()];
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                expanded[y * width + x] = test.test(x, y);
+            }
+        }
+        return expanded;
+    }
+
+    private void draw(GraphicsContext graphics, Run run, double cellSize) {
+        int width = map.getWidth();
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                Color color = Color.WHITE;
+                if (map.isObstacle(x, y)) {
+                    color = Color.BLACK;
+                } else if (run.expanded[y * width + x]) {
+                    color = Color.LIGHTBLUE;
+                }
+                fillCell(graphics, x, y, cellSize, color);
+            }
+        }
+        for (int cell : run.path) {
+            fillCell(graphics, cell % width, cell / width, cellSize, Color.GOLD);
+        }
+        fillCell(graphics, startX, startY, cellSize, Color.LIMEGREEN);
+        fillCell(graphics, endX, endY, cellSize, Color.RED);
+    }
+
+    private static void fillCell(GraphicsContext graphics, int x, int y, double cellSize, Color color) {
+        graphics.setFill(color);
+        graphics.fillRect(x * cellSize, y * cellSize, cellSize, cellSize);
+    }
+}
@@ -0,0 +1,529 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * CooperativePathPlanner routes many agents over the same map without collisions using
+ * windowed hierarchical cooperative A* (WHCA*).
+ * <p>
+ * Each agent runs a space-time A* search limited to a fixed window of time steps and writes its
+ * moves into a shared reservation table keyed by absolute time, so agents planned later route
+ * around the ones planned earlier. An agent whose plan has run out stays on its last cell, and
+ * that cell stays reserved until the agent is planned again. Replanning is spread over the ticks:
+ * every {@link #step()} replans only a slice of the agents, in rotating order, so that each agent
+ * is replanned once per half window and the planning cost per tick stays flat. If an agent's
+ * search fails it keeps its previous plan, which every other agent was planned around, so a
+ * failed search never causes a collision.
+ * <p>
+ * The search is guided by the exact distance to the goal on the static map. Distances are
+ * computed lazily by a reverse resumable A* search from each goal, which only explores the cells
+ * that were actually asked about and is shared by every agent heading to that goal until the goal
+ * is no longer in use.
+ * <p>
+ * Agents move on the same 4-connected unit-cost grid as {@link Grid#getNeighbors(Node)} and may
+ * also wait in place. Vertex conflicts (two agents in one cell) and swap conflicts (two agents
+ * exchanging cells) are both avoided, and every step checks that none occurred.
+ */
+public class CooperativePathPlanner {
+    private static final int DEFAULT_MAX_EXPANSIONS = 4096;
+    private static final int[][] MOVES = {
+            {0, 0}, {-1, 0}, {1, 0}, {0, -1}, {0, 1}
+    };
+    // Reservations are rebuilt from the live plans once stale entries outnumber them this much
+    private static final int STALE_RESERVATION_FACTOR = 4;
+
+    private final ObstacleMap map;
+    private final int width;
+    private final int window;
+    private final int maxExpansions;
+    private final List<Agent> agents = new ArrayList<>();
+    private final ArrayDeque<Agent> replanOrder = new ArrayDeque<>();
+    private final Map<Integer, DistanceTable> distanceTables = new HashMap<>();
+    private final SpaceTimeTable reservations = new SpaceTimeTable();
+    // Keyed by cell at time 0: the agent that stays on the cell after its plan ends
+    private final SpaceTimeTable parking = new SpaceTimeTable();
+    private final SpaceTimeTable stateIndex = new SpaceTimeTable();
+    private final PriorityQueue<Long> openSet = new PriorityQueue<>();
+    private int[] stateCell = new int[256];
+    private int[] stateTime = new int[256];
+    private int[] stateGCost = new int[256];
+    private int[] stateParent = new int[256];
+    private int stateCount;
+    private int time;
+
+    /**
+     * Represents an agent routed by the planner.
+     */
+    public static class Agent {
+        private final int id;
+        private int cell;
+        private int goal;
+        private int time;
+        private int[] plan;
+        private int planStart;
+
+        private Agent(int id, int cell, int goal, int time) {
+            this.id = id;
+            this.cell = cell;
+            this.goal = goal;
+            this.time = time;
+            this.plan = new int[]{cell};
+            this.planStart = time;
+        }
+
+        /**
+         * Returns the id of the agent, which is its index in the order agents were added.
+         *
+         * @return The id of the agent.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the cell id of the agent's current position.
+         *
+         * @return The cell id of the current position.
+         */
+        public int getCell() {
+            return cell;
+        }
+
+        /**
+         * Returns the cell id of the agent's goal.
+         *
+         * @return The cell id of the goal.
+         */
+        public int getGoal() {
+            return goal;
+        }
+
+        /**
+         * Checks if the agent has reached its goal.
+         *
+         * @return True if the agent is at its goal, otherwise false.
+         */
+        public boolean isAtGoal() {
+            return cell == goal;
+        }
+
+        /**
+         * Returns the planned cell ids from the current position to the end of the current plan.
+         * After the last planned cell the agent stays where it is.
+         *
+         * @return The planned cell ids, starting with the current position.
+         */
+        public int[] getPlan() {
+            return Arrays.copyOfRange(plan, Math.min(time - planStart, plan.length - 1), plan.length);
+        }
+
+        private int getPlanEnd() {
+            return planStart + plan.length - 1;
+        }
+
+        private int positionAt(int t) {
+            return plan[Math.min(t - planStart, plan.length - 1)];
+        }
+
+        private boolean isAt(int cell, int t) {
+            return t >= planStart && positionAt(t) == cell;
+        }
+    }
+
+    /**
+     * Distances to one goal, computed by a reverse A* search from the goal that is resumed
+     * whenever a cell it has not settled yet is asked about. The search is directed towards the
+     * cell of the first query, which is where the agents heading to the goal usually are.
+     */
+    private class DistanceTable {
+        // Keyed by cell at time 0
+        private final SpaceTimeTable costs = new SpaceTimeTable();
+        private final SpaceTimeTable closed = new SpaceTimeTable();
+        private final PriorityQueue<Long> open = new PriorityQueue<>();
+        private final int towardsX;
+        private final int towardsY;
+
+        private DistanceTable(int goal, int towards) {
+            this.towardsX = towards % width;
+            this.towardsY = towards / width;
+            costs.put(goal, 0, 0);
+            open.add(pack(estimate(goal), goal));
+        }
+
+        /**
+         * Returns the distance of a cell to the goal, or -1 if the goal cannot be reached from it.
+         */
+        private int get(int cell) {
+            if (closed.get(cell, 0) >= 0) {
+                return costs.get(cell, 0);
+            }
+            while (!open.isEmpty()) {
+                int current = (int) open.poll().longValue();
+                if (closed.get(current, 0) >= 0) {
+                    continue;
+                }
+                closed.put(current, 0, 1);
+                int gCost = costs.get(current, 0);
+                int x = current % width;
+                int y = current / width;
+                for (int i = 1; i < MOVES.length; i++) {
+                    int newX = x + MOVES[i][0];
+                    int newY = y + MOVES[i][1];
+                    if (map.isObstacle(newX, newY)) {
+                        continue;
+                    }
+                    int next = newY * width + newX;
+                    int known = costs.get(next, 0);
+                    if (closed.get(next, 0) < 0 && (known < 0 || gCost + 1 < known)) {
+                        costs.put(next, 0, gCost + 1);
+                        open.add(pack(gCost + 1 + estimate(next), next));
+                    }
+                }
+                if (current == cell) {
+                    return gCost;
+                }
+            }
+            return -1;
+        }
+
+        private int estimate(int cell) {
+            return Math.abs(cell % width - towardsX) + Math.abs(cell / width - towardsY);
+        }
+    }
+
+    /**
+     * Constructs a new CooperativePathPlanner.
+     *
+     * @param map    The map the agents move on.
+     * @param window The number of time steps each agent plans ahead.
+     */
+    public CooperativePathPlanner(ObstacleMap map, int window) {
+        this(map, window, DEFAULT_MAX_EXPANSIONS);
+    }
+
+    /**
+     * Constructs a new CooperativePathPlanner.
+     *
+     * @param map           The map the agents move on.
+     * @param window        The number of time steps each agent plans ahead.
+     * @param maxExpansions The maximum number of space-time states one agent may expand per plan.
+     * @throws IllegalArgumentException If the window or the expansion limit is not positive.
+     */
+    public CooperativePathPlanner(ObstacleMap map, int window, int maxExpansions) {
+        if (window < 1 || maxExpansions < 1) {
+            throw new IllegalArgumentException("Window and expansion limit must be positive");
+        }
+        this.map = map;
+        this.width = map.getWidth();
+        this.window = window;
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Adds an agent to the planner.
+     *
+     * @param start The node the agent starts on.
+     * @param goal  The node the agent has to reach.
+     * @return The new agent.
+     */
+    public Agent addAgent(Node start, Node goal) {
+        return addAgent(start.getX(), start.getY(), goal.getX(), goal.getY());
+    }
+
+    /**
+     * Adds an agent to the planner. The agent waits on its start cell until it is planned, which
+     * happens on the next step.
+     *
+     * @param startX The x coordinate of the start cell.
+     * @param startY The y coordinate of the start cell.
+     * @param goalX  The x coordinate of the goal cell.
+     * @param goalY  The y coordinate of the goal cell.
+     * @return The new agent.
+     * @throws IllegalArgumentException If the start or goal cell is an obstacle or out of bounds,
+     *                                  or another agent is on or planned through the start cell.
+     */
+    public Agent addAgent(int startX, int startY, int goalX, int goalY) {
+        if (map.isObstacle(startX, startY) || map.isObstacle(goalX, goalY)) {
+            throw new IllegalArgumentException("Start and goal must be free cells inside the map");
+        }
+        int start = startY * width + startX;
+        for (int t = time; t <= time + window; t++) {
+            if (occupantAt(start, t, -1) >= 0) {
+                throw new IllegalArgumentException("Start cell is occupied or reserved by another agent");
+            }
+        }
+        Agent agent = new Agent(agents.size(), start, goalY * width + goalX, time);
+        agents.add(agent);
+        reservations.put(start, time, agent.id);
+        parking.put(start, 0, agent.id);
+        replanOrder.addFirst(agent);
+        return agent;
+    }
+
+    /**
+     * Assigns a new goal to an agent. The agent is replanned on the next step.
+     *
+     * @param agent The agent to update.
+     * @param goalX The x coordinate of the new goal cell.
+     * @param goalY The y coordinate of the new goal cell.
+     * @throws IllegalArgumentException If the goal cell is an obstacle or out of bounds.
+     */
+    public void setGoal(Agent agent, int goalX, int goalY) {
+        if (map.isObstacle(goalX, goalY)) {
+            throw new IllegalArgumentException("Goal must be a free cell inside the map");
+        }
+        int oldGoal = agent.goal;
+        agent.goal = goalY * width + goalX;
+        if (agents.stream().noneMatch(other -> other.goal == oldGoal)) {
+            distanceTables.remove(oldGoal);
+        }
+        replanOrder.remove(agent);
+        replanOrder.addFirst(agent);
+    }
+
+    /**
+     * Returns the agents in the order they were added.
+     *
+     * @return The list of agents.
+     */
+    public List<Agent> getAgents() {
+        return agents;
+    }
+
+    /**
+     * Returns the number of time steps taken so far.
+     *
+     * @return The current time step.
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * Replans every agent at once, in the current rotating order. {@link #step()} spreads the same
+     * work over the ticks, so this is only needed to refresh all plans immediately.
+     */
+    public void plan() {
+        replan(agents.size());
+    }
+
+    /**
+     * Replans the next slice of agents and moves every agent one time step along its plan. The
+     * slice is sized so that each agent is replanned once every half window.
+     *
+     * @throws IllegalStateException If two agents collided, which indicates a bug in the planner.
+     */
+    public void step() {
+        int period = Math.max(1, window / 2);
+        replan((agents.size() + period - 1) / period);
+
+        time++;
+        int[] previousCells = new int[agents.size()];
+        for (Agent agent : agents) {
+            previousCells[agent.id] = agent.cell;
+            agent.cell = agent.positionAt(time);
+            agent.time = time;
+        }
+        checkCollisions(previousCells);
+    }
+
+    private void replan(int count) {
+        for (int i = 0; i < count && !replanOrder.isEmpty(); i++) {
+            Agent agent = replanOrder.poll();
+            planAgent(agent);
+            replanOrder.add(agent);
+        }
+        if (reservations.size() > STALE_RESERVATION_FACTOR * (agents.size() + 1) * (window + 1)) {
+            rebuildReservations();
+        }
+    }
+
+    /**
+     * Plans one agent from the current time step with a windowed space-time A* search and
+     * reserves its moves. If no plan is found the agent keeps its previous plan.
+     *
+     * @param agent The agent to plan.
+     */
+    private void planAgent(Agent agent) {
+        DistanceTable distances = distanceTables.get(agent.goal);
+        if (distances == null) {
+            distances = new DistanceTable(agent.goal, agent.cell);
+            distanceTables.put(agent.goal, distances);
+        }
+        int terminal = distances.get(agent.cell) < 0 ? -1 : search(agent, distances);
+        if (terminal < 0) {
+            return;
+        }
+
+        int[] plan = new int[window + 1];
+        int last = stateTime[terminal] - time;
+        for (int state = terminal; state >= 0; state = stateParent[state]) {
+            plan[stateTime[state] - time] = stateCell[state];
+        }
+        Arrays.fill(plan, last + 1, plan.length, plan[last]);
+
+        agent.plan = plan;
+        agent.planStart = time;
+        for (int t = 0; t < plan.length; t++) {
+            reservations.put(plan[t], time + t, agent.id);
+        }
+        parking.put(plan[window], 0, agent.id);
+    }
+
+    /**
+     * Runs the space-time A* search for one agent.
+     *
+     * @param agent     The agent to plan.
+     * @param distances The distances towards the agent's goal.
+     * @return The index of the terminal state, or -1 if the search failed.
+     */
+    private int search(Agent agent, DistanceTable distances) {
+        openSet.clear();
+        stateIndex.clear();
+        stateCount = 0;
+        openSet.add(pack(distances.get(agent.cell), addState(agent.cell, time, 0, -1)));
+        int windowEnd = time + window;
+
+        int expansions = 0;
+        while (!openSet.isEmpty() && expansions < maxExpansions) {
+            int current = (int) openSet.poll().longValue();
+            int cell = stateCell[current];
+            int stateTimeStep = stateTime[current];
+            int gCost = stateGCost[current];
+            if (stateIndex.get(cell, stateTimeStep) != current) {
+                continue;
+            }
+            if (stateTimeStep == windowEnd
+                    || (cell == agent.goal && isFreeUntilWindowEnd(cell, stateTimeStep, agent.id))) {
+                return current;
+            }
+            expansions++;
+
+            int x = cell % width;
+            int y = cell / width;
+            for (int[] move : MOVES) {
+                int newX = x + move[0];
+                int newY = y + move[1];
+                if (map.isObstacle(newX, newY)) {
+                    continue;
+                }
+                int next = newY * width + newX;
+                int nextTime = stateTimeStep + 1;
+                if (isBlocked(cell, next, stateTimeStep, agent.id)) {
+                    continue;
+                }
+                int distance = distances.get(next);
+                if (distance < 0) {
+                    continue;
+                }
+                int tentativeGCost = gCost + 1;
+                int existing = stateIndex.get(next, nextTime);
+                if (existing >= 0 && stateGCost[existing] <= tentativeGCost) {
+                    continue;
+                }
+                int state = addState(next, nextTime, tentativeGCost, current);
+                openSet.add(pack(tentativeGCost + distance, state));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the other agent on a cell at a time step, or -1 if there is none. Entries of plans
+     * that have since been replaced are recognized as stale and ignored.
+     */
+    private int occupantAt(int cell, int t, int agentId) {
+        int occupant = reservations.get(cell, t);
+        if (occupant >= 0 && occupant != agentId && agents.get(occupant).isAt(cell, t)) {
+            return occupant;
+        }
+        int parked = parking.get(cell, 0);
+        if (parked >= 0 && parked != agentId && agents.get(parked).isAt(cell, t)) {
+            return parked;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if moving from one cell to another between two time steps collides with another agent.
+     */
+    private boolean isBlocked(int from, int to, int t, int agentId) {
+        if (occupantAt(to, t + 1, agentId) >= 0) {
+            return true;
+        }
+        int swapper = occupantAt(to, t, agentId);
+        return swapper >= 0 && from != to && agents.get(swapper).isAt(from, t + 1);
+    }
+
+    /**
+     * Checks if no other agent will be on the cell from the given time to the end of the window.
+     * Agents whose plans end earlier stay on their last cell, so they are found at the window end.
+     */
+    private boolean isFreeUntilWindowEnd(int cell, int t, int agentId) {
+        for (int later = t + 1; later <= time + window; later++) {
+            if (occupantAt(cell, later, agentId) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops the reservations of past time steps and replaced plans.
+     */
+    private void rebuildReservations() {
+        reservations.clear();
+        parking.clear();
+        for (Agent agent : agents) {
+            for (int t = Math.max(time, agent.planStart); t <= agent.getPlanEnd(); t++) {
+                reservations.put(agent.positionAt(t), t, agent.id);
+            }
+            parking.put(agent.plan[agent.plan.length - 1], 0, agent.id);
+        }
+    }
+
+    private void checkCollisions(int[] previousCells) {
+        Map<Integer, Integer> occupants = new HashMap<>();
+        Map<Integer, Integer> previousOccupants = new HashMap<>();
+        for (Agent agent : agents) {
+            Integer other = occupants.put(agent.cell, agent.id);
+            if (other != null) {
+                throw new IllegalStateException("Agents " + other + " and " + agent.id
+                        + " collided on cell " + agent.cell + " at time " + time);
+            }
+            previousOccupants.put(previousCells[agent.id], agent.id);
+        }
+        for (Agent agent : agents) {
+            Integer other = previousOccupants.get(agent.cell);
+            if (other != null && other != agent.id && agents.get(other).cell == previousCells[agent.id]) {
+                throw new IllegalStateException("Agents " + other + " and " + agent.id
+                        + " swapped cells at time " + time);
+            }
+        }
+    }
+
+    private int addState(int cell, int stateTimeStep, int gCost, int parent) {
+        if (stateCount == stateCell.length) {
+            int capacity = stateCount * 2;
+            stateCell = Arrays.copyOf(stateCell, capacity);
+            stateTime = Arrays.copyOf(stateTime, capacity);
+            stateGCost = Arrays.copyOf(stateGCost, capacity);
+            stateParent = Arrays.copyOf(stateParent, capacity);
+        }
+        int state = stateCount++;
+        stateCell[state] = cell;
+        stateTime[state] = stateTimeStep;
+        stateGCost[state] = gCost;
+        stateParent[state] = parent;
+        stateIndex.put(cell, stateTimeStep, state);
+        return state;
+    }
+
+    private static long pack(int fCost, int value) {
+        return ((long) fCost << 32) | value;
+    }
+}
@@ -4,7 +4,7 @@ import java.util.List;
 /**
  * Grid represents a two-dimensional grid of nodes used in pathfinding.
  */
-public class Grid {
+public class Grid implements ObstacleMap {
     private final int width;
     private final int height;
     private final Node[][] nodes;
@@ -41,6 +41,39 @@ public class Grid {
         return null;
     }
 
+    /**
+     * Returns the width of the grid.
+     *
+     * @return The width of the grid.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid.
+     *
+     * @return The height of the grid.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Checks if the node at the specified coordinates is an obstacle.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return True if the node is an obstacle or the coordinates are out of bounds, otherwise false.
+     */
+    @Override
+    public boolean isObstacle(int x, int y) {
+        Node node = getNode(x, y);
+        return node == null || node.isObstacle();
+    }
+
     /**
      * Retrieves the neighbors of the given node.
      *
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+
+/**
+ * GridSearch is a reusable, headless A* search over an {@link ObstacleMap}.
+ * <p>
+ * It follows the same rules as the visualization: 4-connected moves, step costs and by default
+ * the heuristic given by {@link AStarPathFinder#distance(Node, Node)} (the Euclidean distance);
+ * every {@link Heuristic} is admissible for 4-connected moves and can be set instead. Instead of
+ * {@link Node} objects it keeps costs and parents in flat arrays indexed by cell id
+ * ({@code y * width + x}) and marks them valid with a generation stamp, so starting a new search
+ * does not clear anything. A search can be run to completion with
+ * {@link #search(ObstacleMap, int, int, int, int)} or advanced one expansion at a time with
+ * {@link #step()}.
+ * <p>
+ * The stamps, the expansion loop and the result are shared with {@link IntegerGridSearch} through
+ * {@link AbstractGridSearch}. An instance holds the buffers for one search at a time and is not
+ * thread-safe; use one instance per worker thread.
+ */
+public class GridSearch extends AbstractGridSearch {
+    private static final int[][] DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1}
+    };
+    private static final double SQRT_2 = Math.sqrt(2);
+
+    private final int capacity;
+    private final double[] gCost;
+    private int[] goalStamp;
+    private int[] heapCells = new int[256];
+    private double[] heapKeys = new double[256];
+    private int heapSize;
+    private NearestTargetIndex targets;
+
+    /**
+     * Constructs a new GridSearch able to search maps of up to the given number of cells.
+     *
+     * @param capacity The largest number of cells of a map this instance will search.
+     */
+    public GridSearch(int capacity) {
+        super(capacity);
+        this.capacity = capacity;
+        this.gCost = new double[capacity];
+        this.heuristic = Heuristic.EUCLIDEAN;
+    }
+
+    /**
+     * Runs a search to the nearest of several targets to completion. The search stops at the
+     * first target it reaches, which is the one with the cheapest path.
+     *
+     * @param map      The map to search.
+     * @param startX   The x coordinate of the start cell.
+     * @param startY   The y coordinate of the start cell.
+     * @param targetXs The x coordinates of the targets.
+     * @param targetYs The y coordinates of the targets.
+     * @return The result of the search; its path ends at the target that was reached.
+     */
+    public Result searchNearest(ObstacleMap map, int startX, int startY, int[] targetXs, int[] targetYs) {
+        return searchNearest(map, startX, startY, targetXs, targetYs, new PathBuffer(0));
+    }
+
+    /**
+     * Runs a search to the nearest of several targets to completion and writes its path into a
+     * caller-owned buffer.
+     *
+     * @param map      The map to search.
+     * @param startX   The x coordinate of the start cell.
+     * @param startY   The y coordinate of the start cell.
+     * @param targetXs The x coordinates of the targets.
+     * @param targetYs The y coordinates of the targets.
+     * @param path     The buffer to write the path into.
+     * @return The result of the search; its path is the given buffer.
+     */
+    public Result searchNearest(ObstacleMap map, int startX, int startY, int[] targetXs, int[] targetYs,
+                                PathBuffer path) {
+        startNearest(map, startX, startY, targetXs, targetYs);
+        return complete(path);
+    }
+
+    @Override
+    public void start(ObstacleMap map, int startX, int startY, int endX, int endY) {
+        this.targets = null;
+        super.start(map, startX, startY, endX, endY);
+    }
+
+    /**
+     * Starts a new search to the nearest of several targets, discarding any search in progress.
+     * Unless the heuristic is {@link Heuristic#ZERO}, the estimate is the Euclidean distance to the
+     * closest target, looked up in a {@link NearestTargetIndex}, so it stays admissible and cheap
+     * for many targets. Targets that
+     * are obstacles or outside the map are ignored.
+     *
+     * @param map      The map to search.
+     * @param startX   The x coordinate of the start cell.
+     * @param startY   The y coordinate of the start cell.
+     * @param targetXs The x coordinates of the targets.
+     * @param targetYs The y coordinates of the targets.
+     * @throws IllegalArgumentException If the map has more cells than this instance can hold.
+     */
+    public void startNearest(ObstacleMap map, int startX, int startY, int[] targetXs, int[] targetYs) {
+        reset(map);
+        if (goalStamp == null) {
+            goalStamp = new int[capacity];
+        }
+        int[] validXs = new int[targetXs.length];
+        int[] validYs = new int[targetYs.length];
+        int count = 0;
+        for (int i = 0; i < targetXs.length; i++) {
+            if (!map.isObstacle(targetXs[i], targetYs[i])) {
+                goalStamp[targetYs[i] * width + targetXs[i]] = generation;
+                validXs[count] = targetXs[i];
+                validYs[count] = targetYs[i];
+                count++;
+            }
+        }
+        this.targets = new NearestTargetIndex(Arrays.copyOf(validXs, count), Arrays.copyOf(validYs, count));
+        this.endCell = -1;
+
+        if (map.isObstacle(startX, startY) || count == 0) {
+            finish(false);
+            return;
+        }
+        open(startX, startY);
+    }
+
+    @Override
+    protected void open(int startX, int startY) {
+        int startCell = startY * width + startX;
+        stamp[startCell] = openStamp();
+        gCost[startCell] = 0;
+        parent[startCell] = -1;
+        push(startCell, estimate(startX, startY));
+    }
+
+    @Override
+    protected void expand(int current) {
+        int x = current % width;
+        int y = current / width;
+        for (int[] direction : DIRECTIONS) {
+            int newX = x + direction[0];
+            int newY = y + direction[1];
+            if (map.isObstacle(newX, newY)) {
+                continue;
+            }
+            int neighbor = newY * width + newX;
+            if (stamp[neighbor] == closedStamp()) {
+                continue;
+            }
+            double tentativeGCost = gCost[current] + 1;
+            if (stamp[neighbor] != openStamp() || tentativeGCost < gCost[neighbor]) {
+                stamp[neighbor] = openStamp();
+                gCost[neighbor] = tentativeGCost;
+                parent[neighbor] = current;
+                push(neighbor, tentativeGCost + estimate(newX, newY));
+            }
+        }
+    }
+
+    @Override
+    protected boolean isGoal(int cell) {
+        return targets == null ? cell == endCell : goalStamp[cell] == generation;
+    }
+
+    @Override
+    protected double pathCost(int cell) {
+        return gCost[cell];
+    }
+
+    @Override
+    protected void clearOpenList() {
+        heapSize = 0;
+    }
+
+    @Override
+    protected void clearStamps() {
+        super.clearStamps();
+        if (goalStamp != null) {
+            Arrays.fill(goalStamp, 0);
+        }
+    }
+
+    private double estimate(int x, int y) {
+        if (heuristic == Heuristic.ZERO) {
+            return 0;
+        }
+        if (targets != null) {
+            return targets.distanceToNearest(x, y);
+        }
+        double dx = Math.abs(x - endX);
+        double dy = Math.abs(y - endY);
+        switch (heuristic) {
+            case MANHATTAN:
+                return dx + dy;
+            case OCTILE:
+                return Math.max(dx, dy) + (SQRT_2 - 1) * Math.min(dx, dy);
+            default:
+                return Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    private void push(int cell, double key) {
+        if (heapSize == heapCells.length) {
+            heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (heapKeys[up] <= key) {
+                break;
+            }
+            heapCells[i] = heapCells[up];
+            heapKeys[i] = heapKeys[up];
+            i = up;
+        }
+        heapCells[i] = cell;
+        heapKeys[i] = key;
+    }
+
+    @Override
+    protected int pop() {
+        if (heapSize == 0) {
+            return -1;
+        }
+        int top = heapCells[0];
+        int cell = heapCells[--heapSize];
+        double key = heapKeys[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (heapKeys[child] >= key) {
+                break;
+            }
+            heapCells[i] = heapCells[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heapCells[i] = cell;
+        heapKeys[i] = key;
+        return top;
+    }
+}
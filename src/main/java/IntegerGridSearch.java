@@ -0,0 +1,255 @@
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * IntegerGridSearch is a reusable, headless A* search with fixed-point integer costs and a bucket
+ * queue as its open list.
+ * <p>
+ * A straight move costs {@value #STRAIGHT_COST} and, when diagonal moves are enabled, a diagonal
+ * move costs {@value #DIAGONAL_COST}, so every cost is an exact integer and results do not depend
+ * on floating-point rounding. Diagonal moves may not cut the corner of an obstacle. The heuristic
+ * is the Manhattan distance for 4-connected searches and the octile distance for 8-connected
+ * ones by default, both in the same units and both consistent, so the f value of the node being
+ * expanded never decreases and never lags the newest entry by more than two move costs. Any
+ * {@link Heuristic} can be set for 4-connected searches; 8-connected ones only accept
+ * {@link Heuristic#ZERO} and {@link Heuristic#OCTILE}, because the Manhattan and, once scaled to
+ * these costs, the Euclidean distance overestimate diagonal moves. The open list is
+ * therefore a small ring of buckets indexed by f value: pushing appends to a bucket and popping
+ * takes from the lowest non-empty one, both in amortized constant time. Nodes with equal f values
+ * are expanded last in, first out, and neighbours are visited in a fixed order, so the same
+ * query always yields the same path.
+ * <p>
+ * It shares the generation stamps, the expansion loop and the result with {@link GridSearch}
+ * through {@link AbstractGridSearch}; result costs are reported in straight moves, so a cost
+ * here is comparable with a cost there. An instance is not thread-safe; use one instance per
+ * worker thread.
+ * <p>
+ * Usage: {@code IntegerGridSearch <map file> [queries] [seed]} compares it with {@link GridSearch}
+ * on random queries.
+ */
+public class IntegerGridSearch extends AbstractGridSearch {
+    /**
+     * The cost of a straight move.
+     */
+    public static final int STRAIGHT_COST = 10;
+    /**
+     * The cost of a diagonal move.
+     */
+    public static final int DIAGONAL_COST = 14;
+
+    private static final int[][] DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {1, -1}, {-1, 1}, {1, 1}
+    };
+    private static final int STRAIGHT_DIRECTIONS = 4;
+    // A power of two larger than the widest spread of f values in the open list
+    private static final int BUCKET_COUNT = 32;
+    private static final int BUCKET_MASK = BUCKET_COUNT - 1;
+
+    private final boolean diagonal;
+    private final int[] gCost;
+    private final int[][] buckets = new int[BUCKET_COUNT][16];
+    private final int[] bucketSizes = new int[BUCKET_COUNT];
+    private int queued;
+    private int currentF;
+
+    /**
+     * Compares the integer search with the floating-point search on random queries.
+     *
+     * @param args The map file and an optional number of queries and seed.
+     * @throws Exception If the map file cannot be read.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: IntegerGridSearch <map file> [queries] [seed]");
+            System.exit(2);
+        }
+        BitGrid map = BitGrid.read(Paths.get(args[0]));
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        int[] queryCells = new int[queries * 2];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < queryCells.length; i++) {
+            int x;
+            int y;
+            do {
+                x = random.nextInt(map.getWidth());
+                y = random.nextInt(map.getHeight());
+            } while (map.isObstacle(x, y));
+            queryCells[i] = y * map.getWidth() + x;
+        }
+
+        int cells = map.getWidth() * map.getHeight();
+        GridSearch floatSearch = new GridSearch(cells);
+        // Use the same heuristic as the 4-connected integer search so only the open lists differ
+        floatSearch.setHeuristic(Heuristic.MANHATTAN);
+        IntegerGridSearch straightSearch = new IntegerGridSearch(cells, false);
+        IntegerGridSearch diagonalSearch = new IntegerGridSearch(cells, true);
+        // Warm up all three searches before timing them
+        for (int round = 0; round < 2; round++) {
+            long floatNanos = 0;
+            long straightNanos = 0;
+            long diagonalNanos = 0;
+            long floatExpansions = 0;
+            long straightExpansions = 0;
+            long diagonalExpansions = 0;
+            int mismatches = 0;
+            for (int i = 0; i < queries; i++) {
+                int width = map.getWidth();
+                int sx = queryCells[2 * i] % width;
+                int sy = queryCells[2 * i] / width;
+                int ex = queryCells[2 * i + 1] % width;
+                int ey = queryCells[2 * i + 1] / width;
+                GridSearch.Result floatResult = floatSearch.search(map, sx, sy, ex, ey);
+                Result straightResult = straightSearch.search(map, sx, sy, ex, ey);
+                Result diagonalResult = diagonalSearch.search(map, sx, sy, ex, ey);
+                floatNanos += floatResult.getNanos();
+                straightNanos += straightResult.getNanos();
+                diagonalNanos += diagonalResult.getNanos();
+                floatExpansions += floatResult.getExpansions();
+                straightExpansions += straightResult.getExpansions();
+                diagonalExpansions += diagonalResult.getExpansions();
+                boolean sameCost = floatResult.isFound()
+                        ? straightResult.getCost() == floatResult.getCost()
+                        : !straightResult.isFound();
+                if (!sameCost) {
+                    mismatches++;
+                }
+            }
+            if (round == 1) {
+                System.out.printf("map %dx%d, %d queries%n", map.getWidth(), map.getHeight(), queries);
+                System.out.printf("float heap, 4-connected:      %8.1f us/query %10d expansions%n",
+                        floatNanos / 1e3 / queries, floatExpansions);
+                System.out.printf("integer buckets, 4-connected: %8.1f us/query %10d expansions, %d cost mismatches%n",
+                        straightNanos / 1e3 / queries, straightExpansions, mismatches);
+                System.out.printf("integer buckets, 8-connected: %8.1f us/query %10d expansions%n",
+                        diagonalNanos / 1e3 / queries, diagonalExpansions);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new IntegerGridSearch able to search maps of up to the given number of cells.
+     *
+     * @param capacity The largest number of cells of a map this instance will search.
+     * @param diagonal True to allow diagonal moves, otherwise false.
+     */
+    public IntegerGridSearch(int capacity, boolean diagonal) {
+        super(capacity);
+        this.diagonal = diagonal;
+        this.gCost = new int[capacity];
+        this.heuristic = diagonal ? Heuristic.OCTILE : Heuristic.MANHATTAN;
+    }
+
+    /**
+     * Checks if this instance allows diagonal moves.
+     *
+     * @return True if diagonal moves are allowed, otherwise false.
+     */
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    @Override
+    protected void open(int startX, int startY) {
+        int startCell = startY * width + startX;
+        stamp[startCell] = openStamp();
+        gCost[startCell] = 0;
+        parent[startCell] = -1;
+        currentF = estimate(startX, startY);
+        push(startCell, currentF);
+    }
+
+    @Override
+    protected void expand(int current) {
+        int x = current % width;
+        int y = current / width;
+        int directions = diagonal ? DIRECTIONS.length : STRAIGHT_DIRECTIONS;
+        for (int d = 0; d < directions; d++) {
+            int newX = x + DIRECTIONS[d][0];
+            int newY = y + DIRECTIONS[d][1];
+            if (map.isObstacle(newX, newY)) {
+                continue;
+            }
+            int cost = STRAIGHT_COST;
+            if (d >= STRAIGHT_DIRECTIONS) {
+                if (map.isObstacle(newX, y) || map.isObstacle(x, newY)) {
+                    continue;
+                }
+                cost = DIAGONAL_COST;
+            }
+            int neighbor = newY * width + newX;
+            if (stamp[neighbor] == closedStamp()) {
+                continue;
+            }
+            int tentativeGCost = gCost[current] + cost;
+            if (stamp[neighbor] != openStamp() || tentativeGCost < gCost[neighbor]) {
+                stamp[neighbor] = openStamp();
+                gCost[neighbor] = tentativeGCost;
+                parent[neighbor] = current;
+                push(neighbor, tentativeGCost + estimate(newX, newY));
+            }
+        }
+    }
+
+    /**
+     * Returns the path cost in straight moves; multiplying it by {@value #STRAIGHT_COST} and
+     * rounding gives back the exact fixed-point cost.
+     */
+    @Override
+    protected double pathCost(int cell) {
+        return (double) gCost[cell] / STRAIGHT_COST;
+    }
+
+    @Override
+    protected void clearOpenList() {
+        Arrays.fill(bucketSizes, 0);
+        queued = 0;
+    }
+
+    @Override
+    public boolean supports(Heuristic heuristic) {
+        return heuristic != null && (!diagonal || heuristic == Heuristic.ZERO || heuristic == Heuristic.OCTILE);
+    }
+
+    private int estimate(int x, int y) {
+        int dx = Math.abs(x - endX);
+        int dy = Math.abs(y - endY);
+        switch (heuristic) {
+            case ZERO:
+                return 0;
+            case MANHATTAN:
+                return STRAIGHT_COST * (dx + dy);
+            case OCTILE:
+                return STRAIGHT_COST * Math.max(dx, dy) + (DIAGONAL_COST - STRAIGHT_COST) * Math.min(dx, dy);
+            default:
+                // Rounding down keeps the estimate consistent
+                return (int) (STRAIGHT_COST * Math.sqrt((double) dx * dx + (double) dy * dy));
+        }
+    }
+
+    private void push(int cell, int f) {
+        int bucket = f & BUCKET_MASK;
+        int size = bucketSizes[bucket];
+        if (size == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], size * 2);
+        }
+        buckets[bucket][size] = cell;
+        bucketSizes[bucket] = size + 1;
+        queued++;
+    }
+
+    @Override
+    protected int pop() {
+        if (queued == 0) {
+            return -1;
+        }
+        while (bucketSizes[currentF & BUCKET_MASK] == 0) {
+            currentF++;
+        }
+        int bucket = currentF & BUCKET_MASK;
+        queued--;
+        return buckets[bucket][--bucketSizes[bucket]];
+    }
+}
@@ -0,0 +1,450 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * MapGenerators is a utility class that fills {@link BitGrid}s with reproducible obstacle layouts.
+ * <p>
+ * Every generator is driven by a seed and returns the same map for the same arguments regardless
+ * of how many threads run it. The uniform and cave generators split the grid into fixed bands of
+ * rows, give each band its own random stream derived from the seed and fill the bands in parallel.
+ * The room generator derives every room from the seed and its position, so bands are independent
+ * as well. The maze generators carve a single connected structure and run sequentially in
+ * constant time per cell with two bits of bookkeeping per maze cell.
+ * <p>
+ * Usage: {@code MapGenerators <uniform|caves|rooms|division|maze> <width> <height> <seed> <file> [density]}
+ */
+public class MapGenerators {
+    private static final int CHUNK_ROWS = 64;
+    private static final int PROBABILITY_BITS = 16;
+    private static final int ROOM_CELL_SIZE = 24;
+    private static final int ROOM_MIN_SIZE = 4;
+    private static final int CAVE_ITERATIONS = 4;
+    private static final double CAVE_FILL_DENSITY = 0.45;
+    private static final int[][] MAZE_DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1}
+    };
+
+    // Private constructor to prevent instantiation of the utility class
+    private MapGenerators() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Generates a map file from the command line and reports how long it took.
+     *
+     * @param args The generator name, width, height, seed, output file and an optional density.
+     * @throws IOException If the map file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: MapGenerators <uniform|caves|rooms|division|maze> <width> <height> <seed> <file> [density]");
+            System.exit(2);
+        }
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        double density = args.length > 5 ? Double.parseDouble(args[5]) : 0.2;
+
+        long startTime = System.nanoTime();
+        BitGrid grid = generate(args[0], width, height, seed, density);
+        long generated = System.nanoTime();
+        grid.write(Paths.get(args[4]));
+        long written = System.nanoTime();
+
+        System.out.printf("%s %dx%d: %d obstacles, generated in %d ms, written in %d ms%n",
+                args[0], width, height, grid.countObstacles(),
+                (generated - startTime) / 1_000_000, (written - generated) / 1_000_000);
+    }
+
+    /**
+     * Generates a map by generator name.
+     *
+     * @param type    One of uniform, caves, rooms, division or maze.
+     * @param width   The width of the map.
+     * @param height  The height of the map.
+     * @param seed    The seed of the map.
+     * @param density The obstacle density, only used by the uniform generator.
+     * @return The generated map.
+     * @throws IllegalArgumentException If the generator name is unknown.
+     */
+    public static BitGrid generate(String type, int width, int height, long seed, double density) {
+        switch (type) {
+            case "uniform":
+                return uniform(width, height, density, seed);
+            case "caves":
+                return caves(width, height, seed);
+            case "rooms":
+                return roomsAndCorridors(width, height, seed);
+            case "division":
+                return recursiveDivision(width, height, seed);
+            case "maze":
+                return depthFirstMaze(width, height, seed);
+            default:
+                throw new IllegalArgumentException("Unknown generator: " + type);
+        }
+    }
+
+    /**
+     * Generates a map where every cell is an obstacle independently with the given probability.
+     * Bits are sampled 64 at a time by combining random words, so no cell is ever drawn twice.
+     *
+     * @param width   The width of the map.
+     * @param height  The height of the map.
+     * @param density The probability of a cell being an obstacle, between 0 and 1.
+     * @param seed    The seed of the map.
+     * @return The generated map.
+     */
+    public static BitGrid uniform(int width, int height, double density, long seed) {
+        BitGrid grid = new BitGrid(width, height);
+        int threshold = (int) Math.round(Math.max(0, Math.min(1, density)) * (1 << PROBABILITY_BITS));
+        long[] words = grid.getWords();
+        int wordsPerRow = grid.getWordsPerRow();
+        long lastWordMask = grid.getLastWordMask();
+
+        forEachChunk(height, (chunk, y0, y1) -> {
+            SplittableRandom random = chunkRandom(seed, chunk);
+            for (int index = y0 * wordsPerRow; index < y1 * wordsPerRow; index++) {
+                long word = randomBits(random, threshold);
+                words[index] = (index % wordsPerRow == wordsPerRow - 1) ? word & lastWordMask : word;
+            }
+        });
+        return grid;
+    }
+
+    /**
+     * Generates a cave map by smoothing uniform noise with a cellular automaton. A cell becomes
+     * rock when more than four of its eight neighbours are rock, or when it is rock and exactly
+     * four neighbours are. Cells outside the map count as rock.
+     *
+     * @param width  The width of the map.
+     * @param height The height of the map.
+     * @param seed   The seed of the map.
+     * @return The generated map.
+     */
+    public static BitGrid caves(int width, int height, long seed) {
+        BitGrid current = uniform(width, height, CAVE_FILL_DENSITY, seed);
+        BitGrid next = new BitGrid(width, height);
+        for (int i = 0; i < CAVE_ITERATIONS; i++) {
+            BitGrid source = current;
+            BitGrid target = next;
+            forEachChunk(height, (chunk, y0, y1) -> {
+                for (int y = y0; y < y1; y++) {
+                    smoothRow(source, target, y);
+                }
+            });
+            next = current;
+            current = target;
+        }
+        return current;
+    }
+
+    /**
+     * Generates rooms joined by corridors. The map is split into square blocks, each block holds
+     * one room of random size and position, and every room is joined to its right and lower
+     * neighbours by an L-shaped corridor, so all rooms are connected.
+     *
+     * @param width  The width of the map.
+     * @param height The height of the map.
+     * @param seed   The seed of the map.
+     * @return The generated map.
+     */
+    public static BitGrid roomsAndCorridors(int width, int height, long seed) {
+        BitGrid grid = new BitGrid(width, height);
+        int blocksX = Math.max(1, width / ROOM_CELL_SIZE);
+        int blocksY = Math.max(1, height / ROOM_CELL_SIZE);
+
+        IntStream.range(0, blocksY).parallel().forEach(blockY -> {
+            int bandTop = blockY * ROOM_CELL_SIZE;
+            int bandBottom = blockY == blocksY - 1 ? height : bandTop + ROOM_CELL_SIZE;
+            grid.fillRect(0, bandTop, width, bandBottom, true);
+
+            for (int blockX = 0; blockX < blocksX; blockX++) {
+                int[] room = room(seed, blockX, blockY, width, height, blocksX, blocksY);
+                grid.fillRect(room[0], room[1], room[2], room[3], false);
+                int centerX = (room[0] + room[2]) / 2;
+                int centerY = (room[1] + room[3]) / 2;
+
+                if (blockX + 1 < blocksX) {
+                    int[] right = room(seed, blockX + 1, blockY, width, height, blocksX, blocksY);
+                    int rightX = (right[0] + right[2]) / 2;
+                    int rightY = (right[1] + right[3]) / 2;
+                    grid.fillRect(centerX, centerY, rightX + 1, centerY + 1, false);
+                    grid.fillRect(rightX, Math.min(centerY, rightY), rightX + 1, Math.max(centerY, rightY) + 1, false);
+                }
+                // Vertical corridors are split at the band boundary so each band only writes its own rows
+                if (blockY + 1 < blocksY) {
+                    grid.fillRect(centerX, centerY, centerX + 1, bandBottom, false);
+                }
+                if (blockY > 0) {
+                    int[] above = room(seed, blockX, blockY - 1, width, height, blocksX, blocksY);
+                    int aboveX = (above[0] + above[2]) / 2;
+                    grid.fillRect(aboveX, bandTop, aboveX + 1, centerY + 1, false);
+                    grid.fillRect(Math.min(aboveX, centerX), centerY, Math.max(aboveX, centerX) + 1, centerY + 1, false);
+                }
+            }
+        });
+        return grid;
+    }
+
+    /**
+     * Generates a maze by recursive division: starting from an empty map, each chamber is split
+     * by a wall with a single gap until chambers are one cell wide. Walls lie on odd coordinates.
+     *
+     * @param width  The width of the map.
+     * @param height The height of the map.
+     * @param seed   The seed of the map.
+     * @return The generated map.
+     */
+    public static BitGrid recursiveDivision(int width, int height, long seed) {
+        BitGrid grid = new BitGrid(width, height);
+        SplittableRandom random = new SplittableRandom(seed);
+        int maxX = (width - 1) & ~1;
+        int maxY = (height - 1) & ~1;
+        closeOddEdges(grid, maxX, maxY);
+
+        // Each chamber is stored as four ints: left, top, right and bottom, all even and inclusive
+        int[] stack = new int[64];
+        int size = 0;
+        stack[size++] = 0;
+        stack[size++] = 0;
+        stack[size++] = maxX;
+        stack[size++] = maxY;
+        while (size > 0) {
+            int y1 = stack[--size];
+            int x1 = stack[--size];
+            int y0 = stack[--size];
+            int x0 = stack[--size];
+            int spanX = (x1 - x0) / 2;
+            int spanY = (y1 - y0) / 2;
+            if (spanX == 0 && spanY == 0) {
+                continue;
+            }
+            boolean horizontal = spanY > spanX || (spanY == spanX && random.nextBoolean());
+            if (stack.length < size + 8) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            if (horizontal) {
+                int wallY = y0 + 2 * random.nextInt(spanY) + 1;
+                int gapX = x0 + 2 * random.nextInt(spanX + 1);
+                grid.fillRect(x0, wallY, x1 + 1, wallY + 1, true);
+                grid.setObstacle(gapX, wallY, false);
+                size = push(stack, size, x0, y0, x1, wallY - 1);
+                size = push(stack, size, x0, wallY + 1, x1, y1);
+            } else {
+                int wallX = x0 + 2 * random.nextInt(spanX) + 1;
+                int gapY = y0 + 2 * random.nextInt(spanY + 1);
+                grid.fillRect(wallX, y0, wallX + 1, y1 + 1, true);
+                grid.setObstacle(wallX, gapY, false);
+                size = push(stack, size, x0, y0, wallX - 1, y1);
+                size = push(stack, size, wallX + 1, y0, x1, y1);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Generates a perfect maze with a randomized depth-first search. Passages lie on even
+     * coordinates. Instead of an explicit stack, each maze cell records the direction it was
+     * entered from in two bits, which is enough to backtrack.
+     *
+     * @param width  The width of the map.
+     * @param height The height of the map.
+     * @param seed   The seed of the map.
+     * @return The generated map.
+     */
+    public static BitGrid depthFirstMaze(int width, int height, long seed) {
+        BitGrid grid = new BitGrid(width, height);
+        grid.fillRect(0, 0, width, height, true);
+        SplittableRandom random = new SplittableRandom(seed);
+        int cellsX = (width + 1) / 2;
+        int cellsY = (height + 1) / 2;
+        long[] entered = new long[(int) (((long) cellsX * cellsY * 2 + 63) >>> 6)];
+        int[] candidates = new int[4];
+
+        int cellX = 0;
+        int cellY = 0;
+        grid.setObstacle(0, 0, false);
+        while (true) {
+            int count = 0;
+            for (int d = 0; d < 4; d++) {
+                int nextX = cellX + MAZE_DIRECTIONS[d][0];
+                int nextY = cellY + MAZE_DIRECTIONS[d][1];
+                if (nextX >= 0 && nextX < cellsX && nextY >= 0 && nextY < cellsY
+                        && grid.isObstacle(nextX * 2, nextY * 2)) {
+                    candidates[count++] = d;
+                }
+            }
+            if (count > 0) {
+                int d = candidates[random.nextInt(count)];
+                int nextX = cellX + MAZE_DIRECTIONS[d][0];
+                int nextY = cellY + MAZE_DIRECTIONS[d][1];
+                grid.setObstacle(cellX + nextX, cellY + nextY, false);
+                grid.setObstacle(nextX * 2, nextY * 2, false);
+                long bit = ((long) nextY * cellsX + nextX) * 2;
+                entered[(int) (bit >>> 6)] |= (long) d << (bit & 63);
+                cellX = nextX;
+                cellY = nextY;
+            } else if (cellX == 0 && cellY == 0) {
+                break;
+            } else {
+                long bit = ((long) cellY * cellsX + cellX) * 2;
+                int d = (int) (entered[(int) (bit >>> 6)] >>> (bit & 63)) & 3;
+                cellX -= MAZE_DIRECTIONS[d][0];
+                cellY -= MAZE_DIRECTIONS[d][1];
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Functional interface for work done on one band of rows.
+     */
+    private interface ChunkTask {
+        void run(int chunk, int y0, int y1);
+    }
+
+    private static void forEachChunk(int height, ChunkTask task) {
+        int chunks = (height + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int y0 = chunk * CHUNK_ROWS;
+            task.run(chunk, y0, Math.min(height, y0 + CHUNK_ROWS));
+        });
+    }
+
+    private static SplittableRandom chunkRandom(long seed, long chunk) {
+        return new SplittableRandom(mix(seed + chunk * 0x9E3779B97F4A7C15L));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns 64 random bits that are each set with probability threshold / 2^16.
+     * The bits of the threshold are consumed from the lowest set bit upwards: a one bit ORs in a
+     * fresh random word and a zero bit ANDs one in, which halves or completes the probability.
+     */
+    private static long randomBits(SplittableRandom random, int threshold) {
+        if (threshold <= 0) {
+            return 0L;
+        }
+        if (threshold >= 1 << PROBABILITY_BITS) {
+            return -1L;
+        }
+        long word = 0L;
+        for (int bit = Integer.numberOfTrailingZeros(threshold); bit < PROBABILITY_BITS; bit++) {
+            if ((threshold & (1 << bit)) != 0) {
+                word |= random.nextLong();
+            } else {
+                word &= random.nextLong();
+            }
+        }
+        return word;
+    }
+
+    /**
+     * Computes one row of the next cave generation, 64 cells at a time, using bit-sliced counters.
+     */
+    private static void smoothRow(BitGrid source, BitGrid target, int y) {
+        long[] in = source.getWords();
+        long[] out = target.getWords();
+        int wordsPerRow = source.getWordsPerRow();
+        long lastWordMask = source.getLastWordMask();
+        int height = source.getHeight();
+
+        long[] sums = new long[4];
+        for (int w = 0; w < wordsPerRow; w++) {
+            sums[0] = 0;
+            sums[1] = 0;
+            sums[2] = 0;
+            sums[3] = 0;
+            long self = 0;
+            for (int row = y - 1; row <= y + 1; row++) {
+                long center = rowWord(in, row, w, wordsPerRow, lastWordMask, height);
+                long west = rowWord(in, row, w - 1, wordsPerRow, lastWordMask, height);
+                long east = rowWord(in, row, w + 1, wordsPerRow, lastWordMask, height);
+                if (row == y) {
+                    self = center;
+                } else {
+                    addBits(sums, center);
+                }
+                addBits(sums, (center << 1) | (west >>> 63));
+                addBits(sums, (center >>> 1) | (east << 63));
+            }
+            long atLeastFive = sums[3] | (sums[2] & (sums[1] | sums[0]));
+            long exactlyFour = sums[2] & ~sums[1] & ~sums[0] & ~sums[3];
+            long word = atLeastFive | (self & exactlyFour);
+            out[y * wordsPerRow + w] = w == wordsPerRow - 1 ? word & lastWordMask : word;
+        }
+    }
+
+    /**
+     * Adds one bit per lane to the 64 four-bit counters held in sums, lowest bit first.
+     */
+    private static void addBits(long[] sums, long bits) {
+        long carry0 = sums[0] & bits;
+        sums[0] ^= bits;
+        long carry1 = sums[1] & carry0;
+        sums[1] ^= carry0;
+        long carry2 = sums[2] & carry1;
+        sums[2] ^= carry1;
+        sums[3] |= carry2;
+    }
+
+    /**
+     * Returns a word of the grid, treating rows and columns outside the map as solid rock.
+     */
+    private static long rowWord(long[] words, int row, int w, int wordsPerRow, long lastWordMask, int height) {
+        if (row < 0 || row >= height || w < 0 || w >= wordsPerRow) {
+            return -1L;
+        }
+        long word = words[row * wordsPerRow + w];
+        return w == wordsPerRow - 1 ? word | ~lastWordMask : word;
+    }
+
+    /**
+     * Returns the room of a block as left, top, right and bottom coordinates (right and bottom exclusive).
+     */
+    private static int[] room(long seed, int blockX, int blockY, int width, int height, int blocksX, int blocksY) {
+        SplittableRandom random = new SplittableRandom(mix(seed ^ mix(((long) blockY << 32) | blockX)));
+        int left = blockX * ROOM_CELL_SIZE;
+        int top = blockY * ROOM_CELL_SIZE;
+        int blockWidth = (blockX == blocksX - 1 ? width : left + ROOM_CELL_SIZE) - left;
+        int blockHeight = (blockY == blocksY - 1 ? height : top + ROOM_CELL_SIZE) - top;
+        int roomWidth = randomSize(random, blockWidth);
+        int roomHeight = randomSize(random, blockHeight);
+        int x0 = left + 1 + random.nextInt(Math.max(1, blockWidth - roomWidth - 1));
+        int y0 = top + 1 + random.nextInt(Math.max(1, blockHeight - roomHeight - 1));
+        return new int[]{x0, y0, Math.min(x0 + roomWidth, left + blockWidth), Math.min(y0 + roomHeight, top + blockHeight)};
+    }
+
+    private static int randomSize(SplittableRandom random, int blockSize) {
+        int max = blockSize - 2;
+        if (max <= ROOM_MIN_SIZE) {
+            return Math.max(1, max);
+        }
+        return ROOM_MIN_SIZE + random.nextInt(max - ROOM_MIN_SIZE + 1);
+    }
+
+    /**
+     * Closes the last row and column when they fall on an odd coordinate, so they cannot form a
+     * corridor that bypasses the maze walls.
+     */
+    private static void closeOddEdges(BitGrid grid, int maxX, int maxY) {
+        grid.fillRect(maxX + 1, 0, grid.getWidth(), grid.getHeight(), true);
+        grid.fillRect(0, maxY + 1, grid.getWidth(), grid.getHeight(), true);
+    }
+
+    private static int push(int[] stack, int size, int x0, int y0, int x1, int y1) {
+        stack[size++] = x0;
+        stack[size++] = y0;
+        stack[size++] = x1;
+        stack[size++] = y1;
+        return size;
+    }
+}
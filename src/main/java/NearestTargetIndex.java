@@ -0,0 +1,147 @@
+/**
+ * NearestTargetIndex answers "how far is the closest target?" for a fixed set of target cells.
+ * <p>
+ * Small sets are scanned directly. Larger sets are sorted into square buckets of about two
+ * targets each, and a lookup visits rings of buckets around the query point until no closer
+ * target can exist, which keeps the multi-goal heuristic cheap even for thousands of targets.
+ */
+public class NearestTargetIndex {
+    private static final int LINEAR_LIMIT = 16;
+    private static final int TARGETS_PER_BUCKET = 2;
+
+    private final int[] xs;
+    private final int[] ys;
+    private final int minX;
+    private final int minY;
+    private final int bucketSize;
+    private final int bucketsX;
+    private final int bucketsY;
+    private final int[] bucketStart;
+
+    /**
+     * Constructs a new NearestTargetIndex.
+     *
+     * @param targetXs The x coordinates of the targets.
+     * @param targetYs The y coordinates of the targets.
+     */
+    public NearestTargetIndex(int[] targetXs, int[] targetYs) {
+        int count = targetXs.length;
+        if (count <= LINEAR_LIMIT) {
+            this.xs = targetXs.clone();
+            this.ys = targetYs.clone();
+            this.minX = 0;
+            this.minY = 0;
+            this.bucketSize = 0;
+            this.bucketsX = 0;
+            this.bucketsY = 0;
+            this.bucketStart = null;
+            return;
+        }
+
+        int lowX = Integer.MAX_VALUE;
+        int lowY = Integer.MAX_VALUE;
+        int highX = Integer.MIN_VALUE;
+        int highY = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            lowX = Math.min(lowX, targetXs[i]);
+            lowY = Math.min(lowY, targetYs[i]);
+            highX = Math.max(highX, targetXs[i]);
+            highY = Math.max(highY, targetYs[i]);
+        }
+        double area = (double) (highX - lowX + 1) * (highY - lowY + 1);
+        this.minX = lowX;
+        this.minY = lowY;
+        this.bucketSize = Math.max(1, (int) Math.ceil(Math.sqrt(area * TARGETS_PER_BUCKET / count)));
+        this.bucketsX = (highX - lowX) / bucketSize + 1;
+        this.bucketsY = (highY - lowY) / bucketSize + 1;
+
+        // Counting sort of the targets by bucket
+        this.bucketStart = new int[bucketsX * bucketsY + 1];
+        for (int i = 0; i < count; i++) {
+            bucketStart[bucketOf(targetXs[i], targetYs[i]) + 1]++;
+        }
+        for (int b = 0; b < bucketsX * bucketsY; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] next = bucketStart.clone();
+        this.xs = new int[count];
+        this.ys = new int[count];
+        for (int i = 0; i < count; i++) {
+            int slot = next[bucketOf(targetXs[i], targetYs[i])]++;
+            xs[slot] = targetXs[i];
+            ys[slot] = targetYs[i];
+        }
+    }
+
+    /**
+     * Returns the number of targets in the index.
+     *
+     * @return The number of targets.
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the Euclidean distance from a point to the closest target.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The distance to the closest target, or infinity if there are no targets.
+     */
+    public double distanceToNearest(int x, int y) {
+        if (bucketStart == null) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < xs.length; i++) {
+                best = Math.min(best, squaredDistance(x, y, i));
+            }
+            return best == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : Math.sqrt(best);
+        }
+
+        int centerX = clamp((x - minX) / bucketSize, x < minX, bucketsX);
+        int centerY = clamp((y - minY) / bucketSize, y < minY, bucketsY);
+        long best = Long.MAX_VALUE;
+        int maxRing = Math.max(Math.max(centerX, bucketsX - 1 - centerX), Math.max(centerY, bucketsY - 1 - centerY));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int by = centerY - ring; by <= centerY + ring; by++) {
+                if (by < 0 || by >= bucketsY) {
+                    continue;
+                }
+                boolean edgeRow = by == centerY - ring || by == centerY + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int bx = centerX - ring; bx <= centerX + ring; bx += step) {
+                    if (bx < 0 || bx >= bucketsX) {
+                        continue;
+                    }
+                    int bucket = by * bucketsX + bx;
+                    for (int i = bucketStart[bucket]; i < bucketStart[bucket + 1]; i++) {
+                        best = Math.min(best, squaredDistance(x, y, i));
+                    }
+                }
+            }
+            // Every bucket of the next ring is at least ring * bucketSize away from the point
+            long bound = (long) ring * bucketSize;
+            if (best <= bound * bound) {
+                break;
+            }
+        }
+        return Math.sqrt(best);
+    }
+
+    private int bucketOf(int x, int y) {
+        return ((y - minY) / bucketSize) * bucketsX + (x - minX) / bucketSize;
+    }
+
+    private static int clamp(int bucket, boolean below, int buckets) {
+        if (below) {
+            return 0;
+        }
+        return Math.min(bucket, buckets - 1);
+    }
+
+    private long squaredDistance(int x, int y, int i) {
+        long dx = x - xs[i];
+        long dy = y - ys[i];
+        return dx * dx + dy * dy;
+    }
+}
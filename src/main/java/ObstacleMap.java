@@ -0,0 +1,29 @@
+/**
+ * ObstacleMap is a read-only view of which cells of a two-dimensional map are blocked.
+ * It lets the headless search code run over any map representation, not only a {@link Grid}.
+ */
+public interface ObstacleMap {
+
+    /**
+     * Returns the width of the map in cells.
+     *
+     * @return The width of the map.
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the map in cells.
+     *
+     * @return The height of the map.
+     */
+    int getHeight();
+
+    /**
+     * Checks if the cell at the specified coordinates is blocked.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return True if the cell is an obstacle or lies outside the map, otherwise false.
+     */
+    boolean isObstacle(int x, int y);
+}
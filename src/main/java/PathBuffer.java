@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * PathBuffer holds a path as a reusable array of cell ids ({@code y * width + x}) from the start
+ * to the end.
+ * <p>
+ * The path is written straight from the parent pointers of a search: the length is counted
+ * first and the cells are then filled in from the back, so no list is built, reversed or
+ * shifted. A buffer only grows, so one buffer per thread serves any number of searches. For
+ * transfer, a path can be encoded as runs of moves in the same direction, which is much shorter
+ * than the cell list for the long straight stretches typical of grid paths.
+ */
+public class PathBuffer {
+    /**
+     * Direction codes used in encoded runs: left, right, up and down.
+     */
+    private static final int[][] DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1}
+    };
+    private static final int DIRECTION_BITS = 2;
+
+    private int[] cells;
+    private int length;
+
+    /**
+     * Constructs an empty PathBuffer.
+     */
+    public PathBuffer() {
+        this(64);
+    }
+
+    /**
+     * Constructs an empty PathBuffer with room for the given number of cells.
+     *
+     * @param capacity The initial capacity.
+     */
+    public PathBuffer(int capacity) {
+        this.cells = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Returns the number of cells in the path, including the start and end.
+     *
+     * @return The number of cells.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Checks if the buffer holds no path.
+     *
+     * @return True if the buffer is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Returns the cell id at a position of the path.
+     *
+     * @param index The position in the path, starting at 0 for the start cell.
+     * @return The cell id.
+     * @throws IndexOutOfBoundsException If the index is outside the path.
+     */
+    public int getCell(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return cells[index];
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity.
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    /**
+     * Appends a cell to the end of the path.
+     *
+     * @param cell The cell id to append.
+     */
+    public void add(int cell) {
+        ensureCapacity(length + 1);
+        cells[length++] = cell;
+    }
+
+    /**
+     * Replaces the contents with the path that ends at a cell, following parent pointers back to
+     * a cell whose parent is negative.
+     *
+     * @param endCell The last cell of the path.
+     * @param parent  The parent of every cell, indexed by cell id.
+     */
+    public void setFromParents(int endCell, int[] parent) {
+        int count = 0;
+        for (int cell = endCell; cell >= 0; cell = parent[cell]) {
+            count++;
+        }
+        ensureCapacity(count);
+        int i = count;
+        for (int cell = endCell; cell >= 0; cell = parent[cell]) {
+            cells[--i] = cell;
+        }
+        length = count;
+    }
+
+    /**
+     * Returns the cell ids of the path in a new array.
+     *
+     * @return The cell ids from the start to the end.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(cells, length);
+    }
+
+    /**
+     * Encodes the moves of a 4-connected path as runs. Each run is one int holding the number of
+     * moves shifted left by two bits and the direction code in the low two bits. Together with
+     * the start cell the runs describe the whole path.
+     *
+     * @param width The width of the map the path lies on.
+     * @return The runs, empty for paths of fewer than two cells.
+     * @throws IllegalStateException If two consecutive cells are not 4-connected neighbours.
+     */
+    public int[] encodeRuns(int width) {
+        int[] runs = new int[Math.max(0, length - 1)];
+        int count = 0;
+        int runDirection = -1;
+        int runLength = 0;
+        for (int i = 1; i < length; i++) {
+            int direction = directionBetween(cells[i - 1], cells[i], width);
+            if (direction == runDirection) {
+                runLength++;
+                continue;
+            }
+            if (runLength > 0) {
+                runs[count++] = (runLength << DIRECTION_BITS) | runDirection;
+            }
+            runDirection = direction;
+            runLength = 1;
+        }
+        if (runLength > 0) {
+            runs[count++] = (runLength << DIRECTION_BITS) | runDirection;
+        }
+        return Arrays.copyOf(runs, count);
+    }
+
+    /**
+     * Replaces the contents with a path decoded from runs produced by {@link #encodeRuns(int)}.
+     *
+     * @param startCell The first cell of the path.
+     * @param runs      The encoded runs.
+     * @param width     The width of the map the path lies on.
+     */
+    public void decodeRuns(int startCell, int[] runs, int width) {
+        int count = 1;
+        for (int run : runs) {
+            count += run >>> DIRECTION_BITS;
+        }
+        ensureCapacity(count);
+        cells[0] = startCell;
+        int i = 1;
+        for (int run : runs) {
+            int[] direction = DIRECTIONS[run & ((1 << DIRECTION_BITS) - 1)];
+            int step = direction[1] * width + direction[0];
+            for (int moves = run >>> DIRECTION_BITS; moves > 0; moves--, i++) {
+                cells[i] = cells[i - 1] + step;
+            }
+        }
+        length = count;
+    }
+
+    private static int directionBetween(int from, int to, int width) {
+        int delta = to - from;
+        if (delta == -1) {
+            return 0;
+        }
+        if (delta == 1) {
+            return 1;
+        }
+        if (delta == -width) {
+            return 2;
+        }
+        if (delta == width) {
+            return 3;
+        }
+        throw new IllegalStateException("Cells " + from + " and " + to + " are not neighbours");
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (cells.length < capacity) {
+            cells = Arrays.copyOf(cells, Math.max(capacity, cells.length * 2));
+        }
+    }
+}
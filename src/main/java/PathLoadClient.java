@@ -0,0 +1,164 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PathLoadClient is a closed-loop load generator for {@link PathServer}.
+ * <p>
+ * Each client thread sends a request, waits for the answer and immediately sends the next one,
+ * picking start and end cells at random from a per-thread seed. At the end it reports the
+ * throughput in requests and queries per second, the number of 429 rejections and the request
+ * latency percentiles.
+ * <p>
+ * Usage: {@code PathLoadClient <base url> [threads] [seconds] [queries per request] [json|binary] [seed]}
+ */
+public class PathLoadClient {
+    private static final int DEFAULT_THREADS = 8;
+    private static final int DEFAULT_SECONDS = 10;
+
+    // Private constructor to prevent instantiation of the utility class
+    private PathLoadClient() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Runs a load test from the command line.
+     *
+     * @param args The server base url and optional thread count, duration, batch size, format and seed.
+     * @throws Exception If the server cannot be reached or a client thread is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: PathLoadClient <base url> [threads] [seconds] [queries per request] [json|binary] [seed]");
+            System.exit(2);
+        }
+        String baseUrl = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+        int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+        int queriesPerRequest = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        boolean binary = args.length > 4 && args[4].equals("binary");
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String info = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/info")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        int width = jsonInt(info, "width");
+        int height = jsonInt(info, "height");
+
+        URI pathUri = URI.create(baseUrl + "/path");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long[][] latencies = new long[threadCount][];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            int threadIndex = t;
+            SplittableRandom random = new SplittableRandom(seed + t);
+            threads[t] = new Thread(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = binary
+                            ? binaryRequest(pathUri, random, width, height, queriesPerRequest)
+                            : jsonRequest(pathUri, random, width, height, queriesPerRequest);
+                    long sent = System.nanoTime();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+                        if (status == 429) {
+                            rejected.incrementAndGet();
+                            continue;
+                        }
+                        if (status != 200) {
+                            failed.incrementAndGet();
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        continue;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    if (count == samples.length) {
+                        samples = Arrays.copyOf(samples, count * 2);
+                    }
+                    samples[count++] = System.nanoTime() - sent;
+                }
+                latencies[threadIndex] = Arrays.copyOf(samples, count);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%d requests (%d queries) in %d s: %.1f req/s, %.1f queries/s, %d rejected, %d failed%n",
+                all.length, (long) all.length * queriesPerRequest, seconds,
+                all.length / (double) seconds, all.length * (double) queriesPerRequest / seconds,
+                rejected.get(), failed.get());
+        if (all.length > 0) {
+            System.out.printf("latency ms: p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n",
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99),
+                    percentile(all, 0.999), all[all.length - 1] / 1e6);
+        }
+    }
+
+    private static HttpRequest jsonRequest(URI uri, SplittableRandom random, int width, int height, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"sx\":").append(random.nextInt(width))
+                    .append(",\"sy\":").append(random.nextInt(height))
+                    .append(",\"ex\":").append(random.nextInt(width))
+                    .append(",\"ey\":").append(random.nextInt(height)).append('}');
+        }
+        json.append(']');
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+                .build();
+    }
+
+    private static HttpRequest binaryRequest(URI uri, SplittableRandom random, int width, int height, int count) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int i = 0; i < count; i++) {
+                out.writeInt(random.nextInt(width));
+                out.writeInt(random.nextInt(height));
+                out.writeInt(random.nextInt(width));
+                out.writeInt(random.nextInt(height));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(bytes.toByteArray()))
+                .build();
+    }
+
+    private static int jsonInt(String json, String key) {
+        int start = json.indexOf("\"" + key + "\":") + key.length() + 3;
+        int end = start;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) {
+            end++;
+        }
+        return Integer.parseInt(json.substring(start, end));
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,502 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PathServer answers path queries over HTTP without the GUI, using the JDK built-in HTTP server.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>{@code GET /info} returns the map size and version as
+ *     {@code {"width":W,"height":H,"version":V}}.</li>
+ *     <li>{@code GET /stats} returns the number of answered, rejected and batched queries.</li>
+ *     <li>{@code POST /path} answers one or more queries. A JSON body is an object or an array of
+ *     objects with {@code sx}, {@code sy}, {@code ex} and {@code ey}; the response is an array of
+ *     results with {@code found}, {@code cost}, {@code expansions}, {@code version} and
+ *     {@code path} as a flat list of x, y pairs. A body sent as {@code application/octet-stream} is a sequence of big-endian
+ *     int quadruples (sx, sy, ex, ey); each result is answered as found (int), expansions (int),
+ *     cost (double, -1 without a path), start cell (int, {@code y * width + x}, -1 without a path),
+ *     run count (int) and that many runs (int). A run is {@code (count << 2) | direction}: count
+ *     moves in one direction, with 0 = left, 1 = right, 2 = up and 3 = down.</li>
+ *     <li>{@code POST /edit} changes the map. The body is an object or an array of objects with
+ *     {@code x}, {@code y} and {@code obstacle} (true or false); all edits of a request are
+ *     published together as one new version, which is returned as {@code {"version":V}}.</li>
+ * </ul>
+ * <p>
+ * The map is held in a {@link VersionedGrid}. A worker takes the latest snapshot when it starts a
+ * batch and answers every query of the batch on it, so edits never block queries and a query
+ * never sees a half-applied edit.
+ * <p>
+ * Queries from all requests go through one bounded intake queue. A batching thread collects the
+ * queries that arrive within a short window and hands each batch to a bounded worker pool, where
+ * a worker answers the whole batch with its own {@link GridSearch} and {@link PathBuffer},
+ * encoding each answer right away so no path outlives its search. When the intake queue or the
+ * worker queue is full the request is answered with 429 instead of waiting, so load beyond
+ * capacity is shed at the door rather than piling up as latency. Responses are written by the
+ * worker that finishes the last query of a request, so HTTP threads never block on searches.
+ * <p>
+ * Usage: {@code PathServer <map file> [port] [workers] [queue capacity] [batch window micros]}
+ */
+public class PathServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final long DEFAULT_BATCH_WINDOW_MICROS = 500;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final int HTTP_THREADS = 4;
+    private static final String BINARY_TYPE = "application/octet-stream";
+
+    private final VersionedGrid grid;
+    private final HttpServer server;
+    private final BlockingQueue<PendingQuery> intake;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService httpExecutor;
+    private final ThreadLocal<GridSearch> searches;
+    private final ThreadLocal<PathBuffer> paths = ThreadLocal.withInitial(PathBuffer::new);
+    private final Thread batcher;
+    private final long batchWindowNanos;
+    private final AtomicLong answered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Represents a query waiting for an answer.
+     */
+    private static class PendingQuery {
+        private final int startX;
+        private final int startY;
+        private final int endX;
+        private final int endY;
+        private final boolean binary;
+        private final CompletableFuture<byte[]> answer = new CompletableFuture<>();
+
+        private PendingQuery(int startX, int startY, int endX, int endY, boolean binary) {
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+            this.binary = binary;
+        }
+    }
+
+    /**
+     * Starts a server from the command line.
+     *
+     * @param args The map file and optional port, worker count, queue capacity and batch window.
+     * @throws IOException If the map cannot be read or the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PathServer <map file> [port] [workers] [queue capacity] [batch window micros]");
+            System.exit(2);
+        }
+        BitGrid map = BitGrid.read(Paths.get(args[0]));
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int workerCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_QUEUE_CAPACITY;
+        long batchWindowMicros = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_BATCH_WINDOW_MICROS;
+
+        PathServer pathServer = new PathServer(map, port, workerCount, queueCapacity, batchWindowMicros);
+        pathServer.start();
+        System.out.printf("Serving %dx%d map on port %d with %d workers%n",
+                map.getWidth(), map.getHeight(), pathServer.getPort(), workerCount);
+    }
+
+    /**
+     * Constructs a new PathServer. The server does not accept connections until {@link #start()}.
+     *
+     * @param map               The map to answer queries on; it is copied into a versioned grid.
+     * @param port              The port to listen on, or 0 for any free port.
+     * @param workerCount       The number of search threads.
+     * @param queueCapacity     The number of queries that may wait before requests are rejected.
+     * @param batchWindowMicros How long the batching thread waits for more queries to join a batch.
+     * @throws IOException If the port cannot be bound.
+     */
+    public PathServer(ObstacleMap map, int port, int workerCount, int queueCapacity, long batchWindowMicros)
+            throws IOException {
+        this.grid = new VersionedGrid(map);
+        this.intake = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+        int cells = map.getWidth() * map.getHeight();
+        this.searches = ThreadLocal.withInitial(() -> new GridSearch(cells));
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity / MAX_BATCH_SIZE)));
+        this.batcher = new Thread(this::runBatcher, "path-batcher");
+        this.batcher.setDaemon(true);
+
+        this.httpExecutor = Executors.newFixedThreadPool(HTTP_THREADS);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(httpExecutor);
+        server.createContext("/info", exchange -> respond(exchange, 200, "application/json",
+                ("{\"width\":" + map.getWidth() + ",\"height\":" + map.getHeight()
+                        + ",\"version\":" + grid.snapshot().getVersion() + "}").getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/stats", exchange -> respond(exchange, 200, "application/json",
+                ("{\"answered\":" + answered.get() + ",\"rejected\":" + rejected.get()
+                        + ",\"batches\":" + batches.get() + "}").getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/path", this::handlePath);
+        server.createContext("/edit", this::handleEdit);
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        batcher.start();
+        server.start();
+    }
+
+    /**
+     * Stops the server and its threads.
+     */
+    public void stop() {
+        server.stop(0);
+        batcher.interrupt();
+        workers.shutdownNow();
+        httpExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Parses the queries of a request, queues them and registers the response to be written
+     * once every query has been answered.
+     */
+    private void handlePath(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", new byte[0]);
+            return;
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean binary = contentType != null && contentType.startsWith(BINARY_TYPE);
+
+        List<PendingQuery> queries;
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readAllBytes();
+            queries = binary ? parseBinary(bytes) : parseJson(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "text/plain", e.getMessage().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        if (intake.remainingCapacity() < queries.size() || !offerAll(queries)) {
+            rejected.addAndGet(queries.size());
+            respond(exchange, 429, "text/plain", new byte[0]);
+            return;
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[queries.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = queries.get(i).answer;
+        }
+        CompletableFuture.allOf(futures).whenComplete((ignored, error) -> {
+            try {
+                if (error != null) {
+                    boolean overloaded = error.getCause() instanceof RejectedExecutionException;
+                    if (overloaded) {
+                        rejected.addAndGet(queries.size());
+                    }
+                    respond(exchange, overloaded ? 429 : 500, "text/plain", new byte[0]);
+                } else {
+                    respond(exchange, 200, binary ? BINARY_TYPE : "application/json", joinAnswers(queries, binary));
+                }
+            } catch (IOException e) {
+                exchange.close();
+            }
+        });
+    }
+
+    /**
+     * Applies the edits of a request as one batch and answers with the new version.
+     */
+    private void handleEdit(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", new byte[0]);
+            return;
+        }
+        VersionedGrid.Snapshot snapshot;
+        try (InputStream body = exchange.getRequestBody()) {
+            VersionedGrid.EditBatch batch = new VersionedGrid.EditBatch();
+            for (int[] edit : parseObjects(new String(body.readAllBytes(), StandardCharsets.UTF_8), "x", "y", "obstacle")) {
+                if (edit[2] != 0) {
+                    batch.setObstacle(edit[0], edit[1]);
+                } else {
+                    batch.setBlank(edit[0], edit[1]);
+                }
+            }
+            snapshot = grid.apply(batch);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "text/plain", e.getMessage().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        respond(exchange, 200, "application/json",
+                ("{\"version\":" + snapshot.getVersion() + "}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean offerAll(List<PendingQuery> queries) {
+        for (int i = 0; i < queries.size(); i++) {
+            if (!intake.offer(queries.get(i))) {
+                // Queries already queued are still answered; their results are simply dropped
+                for (int j = i; j < queries.size(); j++) {
+                    queries.get(j).answer.completeExceptionally(new RejectedExecutionException());
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the queries arriving within one batch window and hands them to a worker.
+     */
+    private void runBatcher() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<PendingQuery> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                batch.add(intake.take());
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingQuery query = remaining > 0 ? intake.poll(remaining, TimeUnit.NANOSECONDS) : intake.poll();
+                    if (query == null) {
+                        break;
+                    }
+                    batch.add(query);
+                }
+                try {
+                    workers.execute(() -> runBatch(batch));
+                    batches.incrementAndGet();
+                } catch (RejectedExecutionException e) {
+                    for (PendingQuery query : batch) {
+                        query.answer.completeExceptionally(e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runBatch(List<PendingQuery> batch) {
+        try {
+            GridSearch search = searches.get();
+            PathBuffer path = paths.get();
+            VersionedGrid.Snapshot map = grid.snapshot();
+            for (PendingQuery query : batch) {
+                try {
+                    GridSearch.Result result = search.search(map, query.startX, query.startY, query.endX, query.endY, path);
+                    query.answer.complete(query.binary ? encodeBinary(result, map) : encodeJson(result, map));
+                    answered.incrementAndGet();
+                } catch (Throwable e) {
+                    query.answer.completeExceptionally(e);
+                }
+            }
+        } finally {
+            // Fail the queries left unanswered, e.g. when the per-thread search cannot be allocated,
+            // so their exchanges do not wait forever
+            for (PendingQuery query : batch) {
+                query.answer.completeExceptionally(new IllegalStateException("batch aborted"));
+            }
+        }
+    }
+
+    /**
+     * Parses a JSON object or array of objects with integer fields sx, sy, ex and ey.
+     *
+     * @param json The request body.
+     * @return The parsed queries.
+     * @throws IllegalArgumentException If the body is not valid.
+     */
+    private static List<PendingQuery> parseJson(String json) {
+        List<PendingQuery> queries = new ArrayList<>();
+        for (int[] fields : parseObjects(json, "sx", "sy", "ex", "ey")) {
+            queries.add(new PendingQuery(fields[0], fields[1], fields[2], fields[3], false));
+        }
+        return queries;
+    }
+
+    /**
+     * Parses a JSON object or array of flat objects whose values are integers or booleans,
+     * read as 1 and 0. Keys other than the given ones are ignored.
+     *
+     * @param json The request body.
+     * @param keys The keys every object must have.
+     * @return The values of the keys per object, in the order of the keys.
+     * @throws IllegalArgumentException If the body is not valid, a key is missing or the body
+     *                                  holds no objects.
+     */
+    private static List<int[]> parseObjects(String json, String... keys) {
+        List<int[]> objects = new ArrayList<>();
+        int[] fields = null;
+        int i = 0;
+        while (i < json.length()) {
+            char c = json.charAt(i);
+            if (c == '{') {
+                fields = new int[keys.length];
+                Arrays.fill(fields, Integer.MIN_VALUE);
+                i++;
+            } else if (c == '}') {
+                if (fields == null) {
+                    throw new IllegalArgumentException("Unexpected '}' at " + i);
+                }
+                for (int field : fields) {
+                    if (field == Integer.MIN_VALUE) {
+                        throw new IllegalArgumentException("Object needs " + String.join(", ", keys));
+                    }
+                }
+                objects.add(fields);
+                fields = null;
+                i++;
+            } else if (c == '"') {
+                int end = json.indexOf('"', i + 1);
+                int colon = end < 0 ? -1 : json.indexOf(':', end);
+                if (fields == null || colon < 0) {
+                    throw new IllegalArgumentException("Unexpected key at " + i);
+                }
+                int index = Arrays.asList(keys).indexOf(json.substring(i + 1, end));
+                i = colon + 1;
+                while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                    i++;
+                }
+                int value;
+                if (json.startsWith("true", i)) {
+                    value = 1;
+                    i += 4;
+                } else if (json.startsWith("false", i)) {
+                    value = 0;
+                    i += 5;
+                } else {
+                    int numberStart = i;
+                    if (i < json.length() && json.charAt(i) == '-') {
+                        i++;
+                    }
+                    while (i < json.length() && Character.isDigit(json.charAt(i))) {
+                        i++;
+                    }
+                    try {
+                        value = Integer.parseInt(json.substring(numberStart, i));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Expected an integer at " + numberStart);
+                    }
+                }
+                if (index >= 0) {
+                    fields[index] = value;
+                }
+            } else {
+                i++;
+            }
+        }
+        if (objects.isEmpty()) {
+            throw new IllegalArgumentException("No objects in request");
+        }
+        return objects;
+    }
+
+    private static List<PendingQuery> parseBinary(byte[] bytes) {
+        if (bytes.length == 0 || bytes.length % 16 != 0) {
+            throw new IllegalArgumentException("Binary body must hold whole queries of four ints");
+        }
+        List<PendingQuery> queries = new ArrayList<>(bytes.length / 16);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            for (int i = 0; i < bytes.length / 16; i++) {
+                queries.add(new PendingQuery(in.readInt(), in.readInt(), in.readInt(), in.readInt(), true));
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed binary body");
+        }
+        return queries;
+    }
+
+    private static byte[] encodeJson(GridSearch.Result result, VersionedGrid.Snapshot map) {
+        int width = map.getWidth();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"found\":").append(result.isFound())
+                .append(",\"cost\":").append(result.isFound() ? String.valueOf(result.getCost()) : "-1")
+                .append(",\"expansions\":").append(result.getExpansions())
+                .append(",\"version\":").append(map.getVersion())
+                .append(",\"path\":[");
+        PathBuffer path = result.getPath();
+        for (int j = 0; j < path.length(); j++) {
+            if (j > 0) {
+                json.append(',');
+            }
+            json.append(path.getCell(j) % width).append(',').append(path.getCell(j) / width);
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encodeBinary(GridSearch.Result result, ObstacleMap map) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(result.isFound() ? 1 : 0);
+            out.writeInt(result.getExpansions());
+            out.writeDouble(result.isFound() ? result.getCost() : -1);
+            PathBuffer path = result.getPath();
+            int[] runs = path.encodeRuns(map.getWidth());
+            out.writeInt(path.isEmpty() ? -1 : path.getCell(0));
+            out.writeInt(runs.length);
+            for (int run : runs) {
+                out.writeInt(run);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Joins the encoded answers of a request in query order; JSON answers become an array.
+     */
+    private static byte[] joinAnswers(List<PendingQuery> queries, boolean binary) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (!binary) {
+            bytes.write('[');
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            if (!binary && i > 0) {
+                bytes.write(',');
+            }
+            bytes.writeBytes(queries.get(i).answer.join());
+        }
+        if (!binary) {
+            bytes.write(']');
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+}
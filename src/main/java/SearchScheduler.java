@@ -0,0 +1,215 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * SearchScheduler time-slices many path searches so that the work done per frame stays within a
+ * fixed budget, however many queries arrive.
+ * <p>
+ * Searches are submitted from any thread and wait in a pending queue ordered by priority. On each
+ * {@link #tick(int, long)}, called from the game loop, up to a fixed number of searches are
+ * active at once, each holding a reusable {@link GridSearch}, and they are advanced in slices of
+ * expansions until the expansion or time budget of the tick is spent. With
+ * {@link Policy#ROUND_ROBIN} the active searches take turns; with {@link Policy#PRIORITY} the
+ * highest-priority search gets the whole budget until it finishes. Suspended searches keep their
+ * open list and costs between ticks, so no work is repeated. When a search finishes its callback
+ * runs on the ticking thread and the next pending search takes its place.
+ */
+public class SearchScheduler {
+    private static final int SLICE_EXPANSIONS = 64;
+
+    private final ObstacleMap map;
+    private final int maxActive;
+    private final Policy policy;
+    private final Queue<Task> submitted = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Task> pending = new PriorityQueue<>(
+            Comparator.comparingInt((Task task) -> -task.priority).thenComparingLong(task -> task.sequence));
+    private final List<Task> active = new ArrayList<>();
+    private final ArrayDeque<GridSearch> idleSearches = new ArrayDeque<>();
+    private long nextSequence;
+    private int cursor;
+
+    /**
+     * The order in which active searches share a tick.
+     */
+    public enum Policy {
+        ROUND_ROBIN, PRIORITY
+    }
+
+    /**
+     * Represents a submitted search.
+     */
+    public static class Task {
+        private final int startX;
+        private final int startY;
+        private final int endX;
+        private final int endY;
+        private final int priority;
+        private final Consumer<GridSearch.Result> onComplete;
+        private long sequence;
+        private GridSearch search;
+        private volatile boolean cancelled;
+
+        private Task(int startX, int startY, int endX, int endY, int priority, Consumer<GridSearch.Result> onComplete) {
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+            this.priority = priority;
+            this.onComplete = onComplete;
+        }
+
+        /**
+         * Cancels the search. It is dropped on the next tick and its callback never runs.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Checks if the search has been cancelled.
+         *
+         * @return True if the search has been cancelled, otherwise false.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Constructs a new SearchScheduler.
+     *
+     * @param map       The map the searches run on.
+     * @param maxActive The maximum number of searches holding search buffers at once.
+     * @param policy    The order in which active searches share a tick.
+     * @throws IllegalArgumentException If maxActive is not positive.
+     */
+    public SearchScheduler(ObstacleMap map, int maxActive, Policy policy) {
+        if (maxActive < 1) {
+            throw new IllegalArgumentException("At least one search must be allowed to run");
+        }
+        this.map = map;
+        this.maxActive = maxActive;
+        this.policy = policy;
+    }
+
+    /**
+     * Submits a search. This method may be called from any thread.
+     *
+     * @param startX     The x coordinate of the start cell.
+     * @param startY     The y coordinate of the start cell.
+     * @param endX       The x coordinate of the end cell.
+     * @param endY       The y coordinate of the end cell.
+     * @param priority   The priority of the search; higher values are started and run first.
+     * @param onComplete The callback receiving the result, run on the ticking thread.
+     * @return A handle that can cancel the search.
+     */
+    public Task submit(int startX, int startY, int endX, int endY, int priority, Consumer<GridSearch.Result> onComplete) {
+        Task task = new Task(startX, startY, endX, endY, priority, onComplete);
+        submitted.add(task);
+        return task;
+    }
+
+    /**
+     * Advances the searches until the expansion budget or the time budget is spent, or until no
+     * search is left. The time budget is checked between slices, so a tick may overrun it by at
+     * most one slice of expansions.
+     *
+     * @param maxExpansions The maximum number of expansions in this tick.
+     * @param maxNanos      The maximum time to spend in this tick, in nanoseconds.
+     * @return The number of expansions performed.
+     */
+    public int tick(int maxExpansions, long maxNanos) {
+        long start = System.nanoTime();
+        Task task;
+        while ((task = submitted.poll()) != null) {
+            task.sequence = nextSequence++;
+            pending.add(task);
+        }
+        activatePending();
+
+        int used = 0;
+        while (used < maxExpansions && !active.isEmpty() && System.nanoTime() - start < maxNanos) {
+            if (cursor >= active.size()) {
+                cursor = 0;
+            }
+            int index = policy == Policy.PRIORITY ? 0 : cursor;
+            task = active.get(index);
+            GridSearch search = task.search;
+            boolean finished = task.cancelled;
+            if (!finished) {
+                int before = search.getExpansions();
+                int slice = Math.min(SLICE_EXPANSIONS, maxExpansions - used);
+                for (int i = 0; i < slice && !finished; i++) {
+                    finished = search.step();
+                }
+                used += search.getExpansions() - before;
+            }
+
+            if (finished) {
+                // Take the result before the search buffers are handed to the next pending search
+                GridSearch.Result result = task.cancelled ? null : search.getResult();
+                active.remove(index);
+                task.search = null;
+                idleSearches.push(search);
+                activatePending();
+                if (result != null) {
+                    task.onComplete.accept(result);
+                }
+            } else {
+                cursor = index + 1;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Returns the number of searches that have buffers and are being advanced.
+     *
+     * @return The number of active searches.
+     */
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * Returns the number of searches waiting to be started, including those submitted since the
+     * last tick.
+     *
+     * @return The number of pending searches.
+     */
+    public int getPendingCount() {
+        return pending.size() + submitted.size();
+    }
+
+    /**
+     * Starts pending searches until the active limit is reached. In priority mode the active list
+     * is kept sorted so that the first entry is always the most urgent search.
+     */
+    private void activatePending() {
+        while (active.size() < maxActive && !pending.isEmpty()) {
+            Task task = pending.poll();
+            if (task.cancelled) {
+                continue;
+            }
+            GridSearch search = idleSearches.isEmpty()
+                    ? new GridSearch(map.getWidth() * map.getHeight())
+                    : idleSearches.pop();
+            search.start(map, task.startX, task.startY, task.endX, task.endY);
+            task.search = search;
+
+            int position = active.size();
+            if (policy == Policy.PRIORITY) {
+                while (position > 0 && active.get(position - 1).priority < task.priority) {
+                    position--;
+                }
+            }
+            active.add(position, task);
+        }
+    }
+}
@@ -0,0 +1,478 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShardCoordinator answers path queries on a map split into regions, each served by its own
+ * {@link ShardWorker} process on the same machine.
+ * <p>
+ * The map is cut into a grid of equally sized shards and one worker process is started per shard
+ * and reached over a loopback socket. The coordinator never loads the map itself: it only
+ * collects the portals of every shard and their precomputed distances, which form a small graph
+ * whose edges are the paths inside a shard and the single steps between facing portals of
+ * neighbouring shards. A query asks the start and end shards for the distances to their portals,
+ * runs Dijkstra over the portal graph and then asks each shard along the way for the local
+ * segment between consecutive portals. Queries inside one shard also try the direct path within
+ * that shard and keep the cheaper of the two.
+ * <p>
+ * Routes through portals are not always the shortest paths on the whole map, since paths may only
+ * cross shard borders at portals. Queries are answered one at a time.
+ * <p>
+ * Usage: {@code ShardCoordinator <map file> <shards x> <shards y>}, then one {@code sx sy ex ey}
+ * query per line on standard input; each answer line holds {@code found cost length micros}, or
+ * {@code error message} for a malformed line.
+ */
+public class ShardCoordinator implements AutoCloseable {
+    private static final long WORKER_EXIT_SECONDS = 5;
+
+    private final int width;
+    private final int height;
+    private final int shardWidth;
+    private final int shardHeight;
+    private final int shardsX;
+    private final Shard[] shards;
+    private final int[] portalCells;
+    private final int[] portalShards;
+    private final int[][] crossings;
+
+    /**
+     * Represents a worker process and its portals.
+     */
+    private static class Shard {
+        private Process process;
+        private Socket socket;
+        private BufferedReader in;
+        private Writer out;
+        private int firstPortal;
+        private int[][] distances;
+
+        private String request(String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            String response = in.readLine();
+            if (response == null) {
+                throw new IOException("Shard worker closed the connection");
+            }
+            if (response.startsWith("ERROR")) {
+                throw new IOException("Shard worker failed: " + response);
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Represents the outcome of a query.
+     */
+    public static class Route {
+        private final int cost;
+        private final PathBuffer path;
+
+        private Route(int cost, PathBuffer path) {
+            this.cost = cost;
+            this.path = path;
+        }
+
+        /**
+         * Checks if a path was found.
+         *
+         * @return True if a path was found, otherwise false.
+         */
+        public boolean isFound() {
+            return cost >= 0;
+        }
+
+        /**
+         * Returns the number of steps of the path.
+         *
+         * @return The cost of the path, or -1 if no path was found.
+         */
+        public int getCost() {
+            return cost;
+        }
+
+        /**
+         * Returns the cell ids of the path from the start to the end in map coordinates.
+         *
+         * @return The path, or an empty buffer if no path was found.
+         */
+        public PathBuffer getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Answers queries from standard input with a sharded map.
+     *
+     * @param args The map file and the number of shards across and down.
+     * @throws IOException If the map cannot be read or a worker fails.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ShardCoordinator <map file> <shards x> <shards y>");
+            System.exit(2);
+        }
+        long startTime = System.nanoTime();
+        try (ShardCoordinator coordinator = new ShardCoordinator(Paths.get(args[0]),
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]))) {
+            System.err.printf("%d shards with %d portals ready in %d ms%n", coordinator.shards.length,
+                    coordinator.portalCells.length, (System.nanoTime() - startTime) / 1_000_000);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int[] query;
+                try {
+                    query = parseQuery(line);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("error " + e.getMessage());
+                    continue;
+                }
+                long queryStart = System.nanoTime();
+                Route route = coordinator.findPath(query[0], query[1], query[2], query[3]);
+                System.out.println(route.isFound() + " " + route.getCost() + " " + route.getPath().length() + " "
+                        + (System.nanoTime() - queryStart) / 1000);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new ShardCoordinator, starts one worker process per shard and loads the portal
+     * graph. The workers run the same Java installation and class path as this process.
+     *
+     * @param mapFile The map file, which every worker reads its region from.
+     * @param shardsX The number of shards across the map.
+     * @param shardsY The number of shards down the map.
+     * @throws IOException If the map cannot be read or a worker cannot be started.
+     */
+    public ShardCoordinator(Path mapFile, int shardsX, int shardsY) throws IOException {
+        int[] size = BitGrid.readDimensions(mapFile);
+        this.width = size[0];
+        this.height = size[1];
+        this.shardWidth = (width + shardsX - 1) / shardsX;
+        this.shardHeight = (height + shardsY - 1) / shardsY;
+        // Rounding up the shard size may leave fewer shards than requested
+        this.shardsX = (width + shardWidth - 1) / shardWidth;
+        int rows = (height + shardHeight - 1) / shardHeight;
+        this.shards = new Shard[this.shardsX * rows];
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<int[]> portals = new ArrayList<>();
+        try {
+            // Start every worker before waiting for any, so they precompute their portals in parallel
+            for (int i = 0; i < shards.length; i++) {
+                int x = (i % this.shardsX) * shardWidth;
+                int y = (i / this.shardsX) * shardHeight;
+                shards[i] = new Shard();
+                shards[i].process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        ShardWorker.class.getName(), mapFile.toAbsolutePath().toString(),
+                        Integer.toString(x), Integer.toString(y),
+                        Integer.toString(Math.min(shardWidth, width - x)), Integer.toString(Math.min(shardHeight, height - y)))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            }
+            for (Shard shard : shards) {
+                connect(shard);
+            }
+
+            for (int i = 0; i < shards.length; i++) {
+                Shard shard = shards[i];
+                int count = Integer.parseInt(shard.request("PORTALS"));
+                int[] coordinates = parseInts(shard.in.readLine());
+                shard.firstPortal = portals.size();
+                shard.distances = new int[count][];
+                for (int p = 0; p < count; p++) {
+                    portals.add(new int[]{coordinates[2 * p + 1] * width + coordinates[2 * p], i});
+                    shard.distances[p] = parseInts(shard.in.readLine());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        this.portalCells = new int[portals.size()];
+        this.portalShards = new int[portals.size()];
+        Map<Integer, Integer> portalByCell = new HashMap<>();
+        for (int p = 0; p < portalCells.length; p++) {
+            portalCells[p] = portals.get(p)[0];
+            portalShards[p] = portals.get(p)[1];
+            portalByCell.put(portalCells[p], p);
+        }
+
+        // Facing portals of neighbouring shards are joined by a single step
+        this.crossings = new int[portalCells.length][];
+        int[][] steps = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        for (int p = 0; p < portalCells.length; p++) {
+            int x = portalCells[p] % width;
+            int y = portalCells[p] / width;
+            int[] partners = new int[steps.length];
+            int count = 0;
+            for (int[] step : steps) {
+                int newX = x + step[0];
+                int newY = y + step[1];
+                if (newX < 0 || newX >= width || newY < 0 || newY >= height) {
+                    continue;
+                }
+                Integer partner = portalByCell.get(newY * width + newX);
+                if (partner != null && portalShards[partner] != portalShards[p]) {
+                    partners[count++] = partner;
+                }
+            }
+            crossings[p] = Arrays.copyOf(partners, count);
+        }
+    }
+
+    private static void connect(Shard shard) throws IOException {
+        BufferedReader stdout = new BufferedReader(new InputStreamReader(shard.process.getInputStream(), StandardCharsets.UTF_8));
+        String ready = stdout.readLine();
+        if (ready == null || !ready.startsWith("READY ")) {
+            throw new IOException("Shard worker did not start: " + ready);
+        }
+        shard.socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(ready.substring(6).trim()));
+        shard.socket.setTcpNoDelay(true);
+        shard.in = new BufferedReader(new InputStreamReader(shard.socket.getInputStream(), StandardCharsets.UTF_8));
+        shard.out = new BufferedWriter(new OutputStreamWriter(shard.socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the number of portals over all shards.
+     *
+     * @return The number of portals.
+     */
+    public int getPortalCount() {
+        return portalCells.length;
+    }
+
+    /**
+     * Finds a path between two cells of the map.
+     *
+     * @param startX The x coordinate of the start cell.
+     * @param startY The y coordinate of the start cell.
+     * @param endX   The x coordinate of the end cell.
+     * @param endY   The y coordinate of the end cell.
+     * @return The route, which is empty if no path was found.
+     * @throws IOException If a worker fails.
+     */
+    public synchronized Route findPath(int startX, int startY, int endX, int endY) throws IOException {
+        PathBuffer path = new PathBuffer();
+        if (startX < 0 || startX >= width || startY < 0 || startY >= height
+                || endX < 0 || endX >= width || endY < 0 || endY >= height) {
+            return new Route(-1, path);
+        }
+        Shard startShard = shards[(startY / shardHeight) * shardsX + startX / shardWidth];
+        Shard endShard = shards[(endY / shardHeight) * shardsX + endX / shardWidth];
+        int bestCost = Integer.MAX_VALUE;
+        String direct = null;
+        if (startShard == endShard) {
+            direct = startShard.request("PATH " + startX + " " + startY + " " + endX + " " + endY);
+            int cost = Integer.parseInt(direct.split(" ", 2)[0]);
+            if (cost >= 0) {
+                bestCost = cost;
+            }
+        }
+        // A route through a portal at least as far away as the direct path cannot be cheaper
+        String limit = bestCost == Integer.MAX_VALUE ? "" : " " + bestCost;
+        int[] startDistances = parseInts(startShard.request("DIST " + startX + " " + startY + limit));
+        int[] endDistances = parseInts(endShard.request("DIST " + endX + " " + endY + limit));
+
+        // Dijkstra over the portal graph, seeded with the distances from the start
+        int[] cost = new int[portalCells.length];
+        int[] previous = new int[portalCells.length];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int i = 0; i < startDistances.length; i++) {
+            if (startDistances[i] >= 0) {
+                int p = startShard.firstPortal + i;
+                cost[p] = startDistances[i];
+                previous[p] = -1;
+                queue.add(((long) cost[p] << 32) | p);
+            }
+        }
+        int lastPortal = -1;
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int p = (int) entry;
+            int pathCost = (int) (entry >>> 32);
+            if (pathCost != cost[p]) {
+                continue;
+            }
+            if (pathCost >= bestCost) {
+                break;
+            }
+            Shard shard = shards[portalShards[p]];
+            if (shard == endShard) {
+                int distance = endDistances[p - shard.firstPortal];
+                if (distance >= 0 && pathCost + distance < bestCost) {
+                    bestCost = pathCost + distance;
+                    lastPortal = p;
+                }
+            }
+            int[] distances = shard.distances[p - shard.firstPortal];
+            for (int i = 0; i < distances.length; i++) {
+                if (distances[i] > 0) {
+                    relax(queue, cost, previous, p, shard.firstPortal + i, pathCost + distances[i]);
+                }
+            }
+            for (int partner : crossings[p]) {
+                relax(queue, cost, previous, p, partner, pathCost + 1);
+            }
+        }
+
+        if (lastPortal < 0) {
+            if (direct != null && bestCost != Integer.MAX_VALUE) {
+                appendSegment(path, direct, false);
+                return new Route(bestCost, path);
+            }
+            return new Route(-1, path);
+        }
+
+        int count = 0;
+        for (int p = lastPortal; p >= 0; p = previous[p]) {
+            count++;
+        }
+        int[] route = new int[count];
+        for (int p = lastPortal; p >= 0; p = previous[p]) {
+            route[--count] = p;
+        }
+        appendSegment(path, startShard.request("PATH " + startX + " " + startY + " " + coordinates(route[0])), false);
+        for (int i = 1; i < route.length; i++) {
+            if (portalShards[route[i]] != portalShards[route[i - 1]]) {
+                path.add(portalCells[route[i]]);
+            } else {
+                Shard shard = shards[portalShards[route[i]]];
+                appendSegment(path, shard.request("PATH " + coordinates(route[i - 1]) + " " + coordinates(route[i])), true);
+            }
+        }
+        appendSegment(path, endShard.request("PATH " + coordinates(route[route.length - 1]) + " " + endX + " " + endY), true);
+        return new Route(bestCost, path);
+    }
+
+    private static void relax(PriorityQueue<Long> queue, int[] cost, int[] previous, int from, int to, int newCost) {
+        if (newCost < cost[to]) {
+            cost[to] = newCost;
+            previous[to] = from;
+            queue.add(((long) newCost << 32) | to);
+        }
+    }
+
+    private String coordinates(int portal) {
+        return portalCells[portal] % width + " " + portalCells[portal] / width;
+    }
+
+    /**
+     * Appends the cells of a PATH response, optionally without its first cell, which is then the
+     * last cell already in the path.
+     */
+    private void appendSegment(PathBuffer path, String response, boolean skipFirst) throws IOException {
+        int[] values = parseInts(response);
+        if (values[0] < 0) {
+            throw new IOException("Shard worker found no path between two connected portals");
+        }
+        for (int i = skipFirst ? 3 : 1; i + 1 < values.length; i += 2) {
+            path.add(values[i + 1] * width + values[i]);
+        }
+    }
+
+    /**
+     * Parses a query line of four integers separated by whitespace or commas.
+     *
+     * @param line The query line.
+     * @return The start and end coordinates.
+     * @throws IllegalArgumentException If the line does not hold exactly four integers.
+     */
+    private static int[] parseQuery(String line) {
+        String[] parts = line.split("[\\s,]+");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("expected sx sy ex ey");
+        }
+        int[] query = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                query[i] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not an integer: " + parts[i]);
+            }
+        }
+        return query;
+    }
+
+    private static int[] parseInts(String line) throws IOException {
+        if (line == null) {
+            throw new IOException("Shard worker closed the connection");
+        }
+        if (line.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = line.split(" ");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Asks every worker to quit and waits for the processes to exit, killing any that do not.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            if (shard == null) {
+                continue;
+            }
+            try {
+                if (shard.out != null) {
+                    shard.out.write("QUIT\n");
+                    shard.out.flush();
+                }
+                if (shard.socket != null) {
+                    shard.socket.close();
+                }
+            } catch (IOException e) {
+                // The worker is gone already or will be killed below
+            }
+        }
+        for (Shard shard : shards) {
+            if (shard == null || shard.process == null) {
+                continue;
+            }
+            try {
+                if (!shard.process.waitFor(WORKER_EXIT_SECONDS, TimeUnit.SECONDS)) {
+                    shard.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                shard.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * ShardWorker serves one rectangular region of a map file, so that a map too large for one
+ * process can be split over several. It is started by a {@link ShardCoordinator}.
+ * <p>
+ * The worker reads only its region and the one-cell strips just outside it from the map file.
+ * Along every edge shared with another region it finds the runs of cells that can be crossed and
+ * places portals on them: one in the middle of a short run, one at each end of a long run. Both
+ * sides of an edge see the same strips, so they place their portals on facing cells. The
+ * distance between every pair of its portals is precomputed with a {@link BitParallelBfs}.
+ * Portals are labelled by the connected region they lie in, so a distance query stops its
+ * breadth-first search as soon as every portal of the region it started in has been reached,
+ * or at the distance limit of the request, instead of flooding the whole shard.
+ * <p>
+ * The worker listens on an ephemeral loopback port, prints {@code READY <port>} on standard output
+ * and then answers one line per request, with all coordinates given in map coordinates:
+ * <ul>
+ *     <li>{@code PORTALS}: the portal count, a line of portal coordinates and one line of
+ *     distances to all portals per portal, -1 where unreachable.</li>
+ *     <li>{@code DIST x y [max]}: the distances from a cell to all portals; with a limit, portals
+ *     farther away than it are reported as unreachable.</li>
+ *     <li>{@code PATH sx sy ex ey}: the cost followed by the coordinates of a shortest path inside
+ *     the region, or -1 if there is none.</li>
+ *     <li>{@code QUIT}: stops the worker.</li>
+ * </ul>
+ * The worker also stops when its connection closes, so it never outlives its coordinator.
+ * <p>
+ * Usage: {@code ShardWorker <map file> <x> <y> <width> <height>}
+ */
+public class ShardWorker {
+    private static final int LONG_ENTRANCE = 8;
+
+    private final int originX;
+    private final int originY;
+    private final BitGrid region;
+    private final BitParallelBfs bfs;
+    private final GridSearch search;
+    private final PathBuffer path = new PathBuffer();
+    private final int[] portalXs;
+    private final int[] portalYs;
+    private final int[] portalComponents;
+    private final int[][] portalDistances;
+
+    /**
+     * Starts a worker from the command line and serves requests until told to quit.
+     *
+     * @param args The map file and the position and size of the region.
+     * @throws IOException If the map file cannot be read or the connection fails.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: ShardWorker <map file> <x> <y> <width> <height>");
+            System.exit(2);
+        }
+        ShardWorker worker = new ShardWorker(Paths.get(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            System.out.println("READY " + server.getLocalPort());
+            System.out.flush();
+            try (Socket socket = server.accept()) {
+                socket.setTcpNoDelay(true);
+                worker.serve(new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)),
+                        new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    /**
+     * Constructs a new ShardWorker and precomputes its portals.
+     *
+     * @param mapFile The map file.
+     * @param x       The x coordinate of the top left cell of the region.
+     * @param y       The y coordinate of the top left cell of the region.
+     * @param width   The width of the region.
+     * @param height  The height of the region.
+     * @throws IOException If the map file cannot be read.
+     */
+    public ShardWorker(Path mapFile, int x, int y, int width, int height) throws IOException {
+        this.originX = x;
+        this.originY = y;
+        this.region = BitGrid.readRegion(mapFile, x, y, width, height);
+        this.bfs = new BitParallelBfs(region);
+        this.search = new GridSearch(width * height);
+
+        int[] mapSize = BitGrid.readDimensions(mapFile);
+        int[] cells = new int[2 * (width + height) + 8];
+        int count = 0;
+        if (y > 0) {
+            BitGrid outside = BitGrid.readRegion(mapFile, x, y - 1, width, 1);
+            count = addPortals(cells, count, outside, 1, 0, 0, 0, width);
+        }
+        if (y + height < mapSize[1]) {
+            BitGrid outside = BitGrid.readRegion(mapFile, x, y + height, width, 1);
+            count = addPortals(cells, count, outside, 1, 0, 0, height - 1, width);
+        }
+        if (x > 0) {
+            BitGrid outside = BitGrid.readRegion(mapFile, x - 1, y, 1, height);
+            count = addPortals(cells, count, outside, 0, 1, 0, 0, height);
+        }
+        if (x + width < mapSize[0]) {
+            BitGrid outside = BitGrid.readRegion(mapFile, x + width, y, 1, height);
+            count = addPortals(cells, count, outside, 0, 1, width - 1, 0, height);
+        }
+        // A corner cell can be a portal of two edges
+        cells = Arrays.stream(cells, 0, count).distinct().toArray();
+
+        this.portalXs = new int[cells.length];
+        this.portalYs = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            portalXs[i] = cells[i] % width;
+            portalYs[i] = cells[i] / width;
+        }
+        // Label the portals by connected region, so distance queries can stop once the portals of
+        // their own region are reached
+        this.portalComponents = new int[cells.length];
+        Arrays.fill(portalComponents, -1);
+        for (int i = 0; i < cells.length; i++) {
+            if (portalComponents[i] >= 0) {
+                continue;
+            }
+            bfs.computeReachable(new int[]{portalXs[i]}, new int[]{portalYs[i]});
+            for (int j = i; j < cells.length; j++) {
+                if (portalComponents[j] < 0 && bfs.isReached(portalXs[j], portalYs[j])) {
+                    portalComponents[j] = i;
+                }
+            }
+        }
+        this.portalDistances = new int[cells.length][];
+        for (int i = 0; i < cells.length; i++) {
+            portalDistances[i] = distancesToPortals(portalXs[i], portalYs[i], Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Finds the runs of crossable cells along one edge of the region and appends their portals.
+     * The edge runs from (insideX, insideY) in steps of (stepX, stepY); the outside strip holds
+     * the cells across the edge in the same order.
+     */
+    private int addPortals(int[] cells, int count, BitGrid outside, int stepX, int stepY,
+                           int insideX, int insideY, int length) {
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean open = i < length
+                    && !region.isObstacle(insideX + i * stepX, insideY + i * stepY)
+                    && !outside.isObstacle(i * stepX, i * stepY);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runLength = i - runStart;
+                if (runLength >= LONG_ENTRANCE) {
+                    cells[count++] = edgeCell(insideX, insideY, stepX, stepY, runStart);
+                    cells[count++] = edgeCell(insideX, insideY, stepX, stepY, i - 1);
+                } else {
+                    cells[count++] = edgeCell(insideX, insideY, stepX, stepY, runStart + (runLength - 1) / 2);
+                }
+                runStart = -1;
+            }
+        }
+        return count;
+    }
+
+    private int edgeCell(int insideX, int insideY, int stepX, int stepY, int i) {
+        return (insideY + i * stepY) * region.getWidth() + insideX + i * stepX;
+    }
+
+    /**
+     * Answers requests until the connection closes or a QUIT request arrives.
+     *
+     * @param in  The request lines.
+     * @param out The destination of the responses.
+     * @throws IOException If reading or writing fails.
+     */
+    public void serve(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] parts = line.trim().split("\\s+");
+            try {
+                switch (parts[0]) {
+                    case "PORTALS":
+                        writePortals(out);
+                        break;
+                    case "DIST":
+                        writeInts(out, distancesToPortals(Integer.parseInt(parts[1]) - originX,
+                                Integer.parseInt(parts[2]) - originY,
+                                parts.length > 3 ? Integer.parseInt(parts[3]) : Integer.MAX_VALUE));
+                        break;
+                    case "PATH":
+                        writePath(out, Integer.parseInt(parts[1]) - originX, Integer.parseInt(parts[2]) - originY,
+                                Integer.parseInt(parts[3]) - originX, Integer.parseInt(parts[4]) - originY);
+                        break;
+                    case "QUIT":
+                        return;
+                    default:
+                        out.write("ERROR unknown request " + parts[0] + "\n");
+                }
+            } catch (RuntimeException e) {
+                out.write("ERROR " + e + "\n");
+            }
+            out.flush();
+        }
+    }
+
+    private void writePortals(Writer out) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append(portalXs.length).append('\n');
+        for (int i = 0; i < portalXs.length; i++) {
+            builder.append(i == 0 ? "" : " ").append(portalXs[i] + originX).append(' ').append(portalYs[i] + originY);
+        }
+        out.write(builder.append('\n').toString());
+        for (int[] distances : portalDistances) {
+            writeInts(out, distances);
+        }
+    }
+
+    private void writePath(Writer out, int startX, int startY, int endX, int endY) throws IOException {
+        GridSearch.Result result = search.search(region, startX, startY, endX, endY, path);
+        if (!result.isFound()) {
+            out.write("-1\n");
+            return;
+        }
+        int width = region.getWidth();
+        StringBuilder builder = new StringBuilder();
+        builder.append((int) result.getCost());
+        for (int i = 0; i < path.length(); i++) {
+            int cell = path.getCell(i);
+            builder.append(' ').append(cell % width + originX).append(' ').append(cell / width + originY);
+        }
+        out.write(builder.append('\n').toString());
+    }
+
+    private int[] distancesToPortals(int x, int y, int maxDistance) {
+        int[] distances = new int[portalXs.length];
+        bfs.distancesTo(x, y, portalXs, portalYs, portalComponents, maxDistance, distances);
+        return distances;
+    }
+
+    private static void writeInts(Writer out, int[] values) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            builder.append(i == 0 ? "" : " ").append(values[i]);
+        }
+        out.write(builder.append('\n').toString());
+    }
+}
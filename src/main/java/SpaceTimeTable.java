@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * SpaceTimeTable is a compact open-addressing hash map from (cell, time) pairs to int values.
+ * Keys are packed into a single long and stored in a flat array, so a reservation or a search
+ * state costs twelve bytes instead of a boxed map entry.
+ */
+public class SpaceTimeTable {
+    private static final long EMPTY = -1L;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructs an empty SpaceTimeTable.
+     */
+    public SpaceTimeTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty SpaceTimeTable sized for the given number of entries.
+     *
+     * @param expectedSize The number of entries expected before the table has to grow.
+     */
+    public SpaceTimeTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, 16)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Associates the given value with a (cell, time) pair, replacing any previous value.
+     *
+     * @param cell  The cell id, must not be negative.
+     * @param time  The time step, must not be negative.
+     * @param value The value to store.
+     */
+    public void put(int cell, int time, int value) {
+        long key = pack(cell, time);
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+            if (size * 2 > keys.length) {
+                values[slot] = value;
+                grow();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Returns the value stored for a (cell, time) pair.
+     *
+     * @param cell The cell id.
+     * @param time The time step.
+     * @return The stored value, or -1 if the pair is not in the table.
+     */
+    public int get(int cell, int time) {
+        int slot = findSlot(pack(cell, time));
+        return keys[slot] == EMPTY ? -1 : values[slot];
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries while keeping the allocated capacity.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+
+    private static long pack(int cell, int time) {
+        return ((long) time << 32) | (cell & 0xFFFFFFFFL);
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
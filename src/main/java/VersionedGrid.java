@@ -0,0 +1,261 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * VersionedGrid is an obstacle map that can be edited while other threads are searching it.
+ * <p>
+ * The map is split into 64x64 tiles, each stored as 64 row words, and the tiles are reached
+ * through one array per row of tiles. Readers take an immutable {@link Snapshot} and query it
+ * without locks for as long as they like. Writers apply an {@link EditBatch}: the tiles and tile
+ * rows the batch touches are copied, every other tile is shared with the previous version, and
+ * the new snapshot is published atomically. A query therefore never sees a half-applied batch,
+ * and an edit costs in proportion to the tiles it touches rather than to the map.
+ * <p>
+ * Tiles without obstacles are stored as null, so large open areas take no memory.
+ */
+public class VersionedGrid {
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final AtomicReference<Snapshot> current;
+
+    /**
+     * Represents one immutable version of the grid.
+     */
+    public static class Snapshot implements ObstacleMap {
+        private final long version;
+        private final int width;
+        private final int height;
+        private final long[][][] tileRows;
+
+        private Snapshot(long version, int width, int height, long[][][] tileRows) {
+            this.version = version;
+            this.width = width;
+            this.height = height;
+            this.tileRows = tileRows;
+        }
+
+        /**
+         * Returns the version of the snapshot. Versions start at zero and grow by one per batch.
+         *
+         * @return The version of the snapshot.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public boolean isObstacle(int x, int y) {
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                return true;
+            }
+            long[] tile = tileRows[y >>> TILE_SHIFT][x >>> TILE_SHIFT];
+            return tile != null && (tile[y & TILE_MASK] & (1L << x)) != 0;
+        }
+
+        /**
+         * Copies the snapshot into a {@link BitGrid}, for engines that work on whole bit rows.
+         *
+         * @return A new BitGrid with the obstacles of this snapshot.
+         */
+        public BitGrid toBitGrid() {
+            BitGrid grid = new BitGrid(width, height);
+            long[] words = grid.getWords();
+            int wordsPerRow = grid.getWordsPerRow();
+            for (int tileY = 0; tileY < tileRows.length; tileY++) {
+                long[][] tiles = tileRows[tileY];
+                for (int tileX = 0; tileX < tiles.length; tileX++) {
+                    if (tiles[tileX] == null) {
+                        continue;
+                    }
+                    int rows = Math.min(TILE_SIZE, height - (tileY << TILE_SHIFT));
+                    for (int row = 0; row < rows; row++) {
+                        words[((tileY << TILE_SHIFT) + row) * wordsPerRow + tileX] = tiles[tileX][row];
+                    }
+                }
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Collects obstacle edits to be published together as one new version.
+     * Later edits to the same cell win.
+     */
+    public static class EditBatch {
+        private int[] cells = new int[48];
+        private int size;
+
+        /**
+         * Marks a cell as an obstacle.
+         *
+         * @param x The x coordinate.
+         * @param y The y coordinate.
+         * @return This batch.
+         */
+        public EditBatch setObstacle(int x, int y) {
+            return add(x, y, true);
+        }
+
+        /**
+         * Clears the obstacle from a cell.
+         *
+         * @param x The x coordinate.
+         * @param y The y coordinate.
+         * @return This batch.
+         */
+        public EditBatch setBlank(int x, int y) {
+            return add(x, y, false);
+        }
+
+        /**
+         * Returns the number of edits in the batch.
+         *
+         * @return The number of edits.
+         */
+        public int size() {
+            return size;
+        }
+
+        private EditBatch add(int x, int y, boolean obstacle) {
+            if (size * 3 + 3 > cells.length) {
+                cells = Arrays.copyOf(cells, cells.length * 2);
+            }
+            cells[size * 3] = x;
+            cells[size * 3 + 1] = y;
+            cells[size * 3 + 2] = obstacle ? 1 : 0;
+            size++;
+            return this;
+        }
+    }
+
+    /**
+     * Constructs a new VersionedGrid with all cells free.
+     *
+     * @param width  The width of the grid.
+     * @param height The height of the grid.
+     * @throws IllegalArgumentException If a dimension is not positive.
+     */
+    public VersionedGrid(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_MASK) >>> TILE_SHIFT;
+        this.tilesY = (height + TILE_MASK) >>> TILE_SHIFT;
+        long[][][] tileRows = new long[tilesY][][];
+        for (int tileY = 0; tileY < tilesY; tileY++) {
+            tileRows[tileY] = new long[tilesX][];
+        }
+        this.current = new AtomicReference<>(new Snapshot(0, width, height, tileRows));
+    }
+
+    /**
+     * Constructs a new VersionedGrid holding the obstacles of another map as version zero.
+     *
+     * @param map The map to copy.
+     */
+    public VersionedGrid(ObstacleMap map) {
+        this(map.getWidth(), map.getHeight());
+        long[][][] tileRows = current.get().tileRows;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (map.isObstacle(x, y)) {
+                    long[][] tiles = tileRows[y >>> TILE_SHIFT];
+                    if (tiles[x >>> TILE_SHIFT] == null) {
+                        tiles[x >>> TILE_SHIFT] = new long[TILE_SIZE];
+                    }
+                    tiles[x >>> TILE_SHIFT][y & TILE_MASK] |= 1L << x;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the latest published snapshot. The snapshot never changes, so a query can keep
+     * reading it while newer versions are published.
+     *
+     * @return The latest snapshot.
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Applies a batch of edits and publishes the result as a new version. Writers are serialized;
+     * readers are never blocked.
+     *
+     * @param batch The edits to apply.
+     * @return The newly published snapshot.
+     * @throws IllegalArgumentException If an edit lies outside the grid.
+     */
+    public synchronized Snapshot apply(EditBatch batch) {
+        Snapshot previous = current.get();
+        long[][][] tileRows = previous.tileRows.clone();
+        boolean[] rowCopied = new boolean[tilesY];
+        // Tiles already copied for this batch, keyed by tile index, so each is copied only once
+        Set<Integer> tileCopied = new HashSet<>();
+
+        for (int i = 0; i < batch.size; i++) {
+            int x = batch.cells[i * 3];
+            int y = batch.cells[i * 3 + 1];
+            boolean obstacle = batch.cells[i * 3 + 2] != 0;
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                throw new IllegalArgumentException("Edit out of bounds: (" + x + ", " + y + ")");
+            }
+            int tileX = x >>> TILE_SHIFT;
+            int tileY = y >>> TILE_SHIFT;
+            if (!rowCopied[tileY]) {
+                tileRows[tileY] = tileRows[tileY].clone();
+                rowCopied[tileY] = true;
+            }
+            long[][] tiles = tileRows[tileY];
+            if (tileCopied.add(tileY * tilesX + tileX)) {
+                tiles[tileX] = tiles[tileX] == null ? new long[TILE_SIZE] : tiles[tileX].clone();
+            }
+            if (obstacle) {
+                tiles[tileX][y & TILE_MASK] |= 1L << x;
+            } else {
+                tiles[tileX][y & TILE_MASK] &= ~(1L << x);
+            }
+        }
+
+        for (int index : tileCopied) {
+            long[][] tiles = tileRows[index / tilesX];
+            if (isEmpty(tiles[index % tilesX])) {
+                tiles[index % tilesX] = null;
+            }
+        }
+
+        Snapshot next = new Snapshot(previous.version + 1, width, height, tileRows);
+        current.set(next);
+        return next;
+    }
+
+    private static boolean isEmpty(long[] tile) {
+        for (long word : tile) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
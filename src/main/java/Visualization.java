@@ -21,8 +21,8 @@ import java.util.*;
  * The visualization updates in real-time to show the progress of the algorithm.
  * <p>
  * The class provides an interactive interface with buttons to start the algorithm, clear the grid,
- * and add random obstacles. Users can also click and drag nodes on the grid to change their
- * positions or status.
+ * add random obstacles and compare several search engines side by side. Users can also click and
+ * drag nodes on the grid to change their positions or status.
  * <p>
  * Dependencies: JavaFX, Grid, Node, and AStarPathFinder classes.
  * <p>
@@ -217,23 +217,41 @@ public class Visualization extends Application {
         updateSets(openSet, closedSet);
     }
 
+    /**
+     * Opens a dashboard that runs several search engines on a snapshot of the current obstacles,
+     * start and end, and compares their explored cells, expansions, times and path costs.
+     */
+    private void compareEngines() {
+        if (startNode == null || endNode == null) {
+            return;
+        }
+        new ComparisonDashboard(BitGrid.copyOf(grid), startNode.getX(), startNode.getY(),
+                endNode.getX(), endNode.getY()).show();
+    }
+
     /**
      * Adds the specified number of random obstacles to the grid.
+     * The free cells are collected once and the obstacles are drawn from them with a partial
+     * Fisher-Yates shuffle, so no cell is drawn twice however dense the grid already is.
      *
      * @param numObstacles The number of obstacles to add to the grid.
      */
     private void addRandomObstacles(int numObstacles) {
         Random random = new Random();
+        List<Node> freeNodes = new ArrayList<>();
+        for (Node[] nodesArray : grid.getNodes()) {
+            for (Node node : nodesArray) {
+                if (!node.isObstacle() && node != startNode && node != endNode) {
+                    freeNodes.add(node);
+                }
+            }
+        }
 
-        for (int i = 0; i < numObstacles; i++) {
-            int x, y;
-            Node node;
-            do {
-                x = random.nextInt(GRID_WIDTH);
-                y = random.nextInt(GRID_HEIGHT);
-                node = grid.getNode(x, y);
-            } while (node.isObstacle() || node == startNode || node == endNode);
-
+        int count = Math.min(numObstacles, freeNodes.size());
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(freeNodes.size() - i);
+            Node node = freeNodes.get(j);
+            freeNodes.set(j, freeNodes.get(i));
             node.setObstacle();
         }
     }
@@ -415,6 +433,9 @@ public class Visualization extends Application {
         Button addRandomObstaclesButton = new Button("Add Random Obstacles");
         addRandomObstaclesButton.setOnAction(e -> addRandomObstacles((int) obstaclesSlider.getValue()));
 
+        Button compareButton = new Button("Compare Engines");
+        compareButton.setOnAction(e -> compareEngines());
+
         Button clearButton = new Button("Clear");
         clearButton.setOnAction(e -> clearGrid());
 
@@ -424,7 +445,7 @@ public class Visualization extends Application {
 
         HBox bottomButtonsContainer = new HBox(10);
         bottomButtonsContainer.setAlignment(Pos.CENTER);
-        bottomButtonsContainer.getChildren().addAll(clearButton, startAlgorithmButton);
+        bottomButtonsContainer.getChildren().addAll(clearButton, startAlgorithmButton, compareButton);
 
         VBox sliderContainer = new VBox(5);
         sliderContainer.setAlignment(Pos.CENTER);